@@ -0,0 +1,505 @@
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dto.EpicDto;
+import dto.NamedEntity;
+import dto.UserStoryDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Imports epics, user stories and tasks from a CSV or JSONL file into a team.
+ * The file is read as a stream in fixed-size batches, so memory stays flat regardless
+ * of its size. Each batch is created through {@link BulkOperations} (epics first, then
+ * stories, then tasks, so a row can reference a parent created earlier in the same batch).
+ * After every batch the number of finished rows is written to a checkpoint file next to
+ * the input, and a later run resumes from there. Creates carry an Idempotency-Key derived
+ * from the file and row number, so rows of an interrupted batch that get sent again are
+ * recognized by the server as duplicates.
+ *
+ * Columns / JSON keys: type (epic, userstory, task), name, description, status, parent.
+ * parent is the name or id of the epic (for a story) or user story (for a task); when empty
+ * the team's first epic / user story is used, like /create does. A line that can't be
+ * parsed (malformed JSON, a CSV record with extra fields) fails as that row only.
+ *
+ * Rows that fail (unparseable, invalid, or rejected by the server) are written with the reason
+ * to <file>.rejects.jsonl, which can itself be imported once fixed. When the backend can't be
+ * reached at all (connection errors, timeouts, an open circuit breaker) the import stops
+ * instead, leaving the checkpoint before the batch so the next run retries it.
+ */
+public class BacklogImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("teamflow.import.batchSize", 200);
+    private static final List<String> LEVELS = List.of("epic", "userstory", "task"); // Parent before child
+
+    // One data row of the input; number is 1-based and excludes the CSV header.
+    // A row that couldn't be parsed carries only its number, the error and its raw text.
+    private record Row(long number, String type, String name, String description, String status, String parent,
+                       String error, String raw) {
+
+        Row(long number, String type, String name, String description, String status, String parent) {
+            this(number, type, name, description, status, parent, null, null);
+        }
+
+        static Row unreadable(long number, String error, String raw) {
+            return new Row(number, null, null, null, null, null, error, raw);
+        }
+    }
+
+    // One line of the rejects file: the row's fields (same keys as the input) plus why it failed
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Reject(String type, String name, String description, String status, String parent, long row, String error, String raw) {}
+
+    // Totals for the run, including rows skipped because of a checkpoint. rejectsFile is null if no row failed.
+    public record Summary(long skippedRows, long importedRows, long failedRows, double rowsPerSecond, Path rejectsFile) {}
+
+    private static final ObjectWriter REJECT_WRITER = JsonCodecs.writer(Reject.class);
+
+    private final UUID teamId;
+    private final Path file;
+    private final Path checkpointFile;
+    private final Path rejectsFile;
+    private final int batchSize;
+
+    // Failures of the batch being imported; written out once the batch is done
+    private final List<Reject> batchRejects = new ArrayList<>();
+    private String unavailable = null; // Set when the backend couldn't be reached during the batch
+
+    // Parent lookups by lower-cased name; only epics and stories are kept, never tasks
+    private final Map<String, UUID> epicIdsByName = new HashMap<>();
+    private final Map<String, UUID> storyIdsByName = new HashMap<>();
+    private boolean existingEpicsLoaded = false;
+    private final Set<UUID> epicsWithLoadedStories = new HashSet<>();
+
+    public BacklogImporter(UUID teamId, Path file, int batchSize) {
+        this.teamId = teamId;
+        this.file = file;
+        this.checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        this.rejectsFile = file.resolveSibling(file.getFileName() + ".rejects.jsonl");
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public Summary run(boolean restart) throws IOException, InterruptedException {
+        long skip = restart ? 0 : readCheckpoint();
+        if (skip > 0) {
+            System.out.println("Resuming import of " + file.getFileName() + " after row " + skip + " (checkpoint " + checkpointFile.getFileName() + ").");
+        } else {
+            Files.deleteIfExists(rejectsFile); // Left from an earlier run of the whole file
+        }
+
+        long imported = 0;
+        long failed = 0;
+        long start = System.nanoTime();
+
+        try (RowReader rows = openRowReader()) {
+            for (long i = 0; i < skip; i++) {
+                if (rows.next() == null) break; // File got shorter than the checkpoint
+            }
+
+            List<Row> batch = new ArrayList<>(batchSize);
+            while (true) {
+                batch.clear();
+                Row row;
+                while (batch.size() < batchSize && (row = rows.next()) != null) {
+                    batch.add(row);
+                }
+                if (batch.isEmpty()) break;
+
+                long batchFailed = importBatch(batch);
+                if (unavailable != null) {
+                    // Nothing is known about this batch's remaining rows; don't count them as failed
+                    long done = batch.get(0).number() - 1;
+                    throw new IOException("stopped at row " + (done + 1) + ", " + (done > 0 ? "checkpoint kept after row " + done
+                            : "nothing checkpointed") + ": " + unavailable);
+                }
+                writeRejects();
+                failed += batchFailed;
+                imported += batch.size();
+                writeCheckpoint(batch.get(batch.size() - 1).number());
+
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Imported %d rows (%d failed), %.1f rows/s%n", skip + imported, failed, seconds > 0 ? imported / seconds : 0.0);
+            }
+        }
+
+        Files.deleteIfExists(checkpointFile); // Finished: the next run starts from the top
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Summary(skip, imported, failed, seconds > 0 ? imported / seconds : 0.0, Files.exists(rejectsFile) ? rejectsFile : null);
+    }
+
+    // Creates one batch level by level and returns how many rows failed. Stops early, with
+    // unavailable set, if the backend can't be reached.
+    private long importBatch(List<Row> batch) throws IOException, InterruptedException {
+        batchRejects.clear();
+        unavailable = null;
+        long failed = 0;
+        for (Row row : batch) {
+            if (row.error() != null) {
+                System.err.println("Row " + row.number() + " failed: " + row.error());
+                batchRejects.add(new Reject(null, null, null, null, null, row.number(), row.error(), row.raw()));
+                failed++;
+            }
+        }
+        for (String level : LEVELS) {
+            if (unavailable != null) break;
+            List<Row> levelRows = new ArrayList<>();
+            List<BulkOperations.Operation> operations = new ArrayList<>();
+            for (Row row : batch) {
+                if (!level.equals(row.type())) continue;
+                try {
+                    operations.add(toOperation(row).withIdempotencyKey(idempotencyKey(row)));
+                    levelRows.add(row);
+                } catch (IOException e) {
+                    if (HttpTransport.isUnavailable(e)) {
+                        unavailable = e.getMessage();
+                        break;
+                    }
+                    reportFailure(row, e.getMessage());
+                    failed++;
+                } catch (IllegalArgumentException e) {
+                    reportFailure(row, e.getMessage());
+                    failed++;
+                }
+            }
+            if (unavailable != null || operations.isEmpty()) continue;
+
+            BulkOperations.Result result = BulkOperations.execute(operations, BulkOperations.DEFAULT_CONCURRENCY, null);
+            for (BulkOperations.ItemResult item : result.items()) {
+                Row row = levelRows.get(item.index());
+                if (!item.succeeded() && HttpTransport.isUnavailable(item.error())) {
+                    unavailable = item.error().getMessage();
+                } else if (!item.succeeded()) {
+                    reportFailure(row, item.error().getMessage());
+                    failed++;
+                } else if (item.entity() instanceof EpicDto epic) {
+                    epicIdsByName.put(key(row.name()), epic.getId());
+                } else if (item.entity() instanceof UserStoryDto story) {
+                    storyIdsByName.put(key(row.name()), story.getId());
+                }
+            }
+        }
+        for (Row row : batch) {
+            if (unavailable == null && row.error() == null && !LEVELS.contains(row.type())) {
+                reportFailure(row, "unknown type '" + row.type() + "' (expected epic, userstory or task)");
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private BulkOperations.Operation toOperation(Row row) throws IOException, InterruptedException {
+        if (row.name() == null || row.name().isEmpty()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        switch (row.type()) {
+            case "epic":
+                return BulkOperations.Operation.createEpic(teamId, row.name(), row.description());
+            case "userstory":
+                UUID epicId = resolveEpic(row.parent());
+                return BulkOperations.Operation.createUserStory(epicId, row.name(), row.description(), statusOrDefault(row.status(), "To Do"));
+            case "task":
+                UUID storyId = resolveStory(row.parent());
+                return BulkOperations.Operation.createTask(storyId, row.name(), row.description(), statusOrDefault(row.status(), "TODO"));
+            default:
+                throw new IllegalArgumentException("unknown type '" + row.type() + "'");
+        }
+    }
+
+    private UUID resolveEpic(String parent) throws IOException, InterruptedException {
+        if (parent == null || parent.isEmpty()) {
+            return require(HttpClient.fetchFirstEpicId(teamId), "team has no epics");
+        }
+        UUID id = parseUuid(parent);
+        if (id != null) return id;
+
+        if (!epicIdsByName.containsKey(key(parent)) && !existingEpicsLoaded) {
+            rememberAll(HttpClient.fetchContextEntities("epic", teamId), epicIdsByName);
+            existingEpicsLoaded = true;
+        }
+        return require(epicIdsByName.get(key(parent)), "no epic named '" + parent + "'");
+    }
+
+    private UUID resolveStory(String parent) throws IOException, InterruptedException {
+        if (parent == null || parent.isEmpty()) {
+            return require(HttpClient.fetchFirstUserStoryId(teamId), "team has no user stories");
+        }
+        UUID id = parseUuid(parent);
+        if (id != null) return id;
+
+        if (!storyIdsByName.containsKey(key(parent))) {
+            // Look through the stories of every epic we haven't scanned yet (one request per epic, once)
+            if (!existingEpicsLoaded) {
+                rememberAll(HttpClient.fetchContextEntities("epic", teamId), epicIdsByName);
+                existingEpicsLoaded = true;
+            }
+            for (UUID epicId : new ArrayList<>(epicIdsByName.values())) {
+                if (epicsWithLoadedStories.add(epicId)) {
+                    rememberAll(HttpClient.sendGetRequest("/user-stories?epicId=" + epicId, JsonCodecs.listReader(UserStoryDto.class)), storyIdsByName);
+                    if (storyIdsByName.containsKey(key(parent))) break;
+                }
+            }
+        }
+        return require(storyIdsByName.get(key(parent)), "no user story named '" + parent + "'");
+    }
+
+    private static void rememberAll(List<?> entities, Map<String, UUID> idsByName) {
+        if (entities == null) return;
+        for (Object entity : entities) {
+            if (entity instanceof NamedEntity named && named.getName() != null) {
+                idsByName.putIfAbsent(key(named.getName()), named.getId());
+            }
+        }
+    }
+
+    // Stable per file and row, so a resumed import sends the same key for the same row
+    private String idempotencyKey(Row row) {
+        String source = "teamflow-import:" + teamId + ":" + file.toAbsolutePath().normalize() + ":" + row.number();
+        return UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private void reportFailure(Row row, String reason) {
+        System.err.println("Row " + row.number() + " (" + row.type() + " '" + row.name() + "') failed: " + reason);
+        batchRejects.add(new Reject(row.type(), row.name(), row.description(), row.status(), row.parent(), row.number(), reason, null));
+    }
+
+    // Appends the finished batch's failures to the rejects file, in row order
+    private void writeRejects() throws IOException {
+        if (batchRejects.isEmpty()) return;
+        batchRejects.sort(Comparator.comparingLong(Reject::row));
+        StringBuilder lines = new StringBuilder();
+        for (Reject reject : batchRejects) {
+            lines.append(REJECT_WRITER.writeValueAsString(reject)).append('\n');
+        }
+        Files.writeString(rejectsFile, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static UUID require(UUID id, String message) {
+        if (id == null) throw new IllegalArgumentException(message);
+        return id;
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null; // A name, not an id
+        }
+    }
+
+    private static String statusOrDefault(String status, String defaultStatus) {
+        return status == null || status.isEmpty() ? defaultStatus : status;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Accepts "userstory", "user story", "user-story" and "story"
+    private static String normalizeType(String type) {
+        if (type == null) return "";
+        String t = type.trim().toLowerCase(Locale.ROOT).replace(" ", "").replace("-", "").replace("_", "");
+        return "story".equals(t) ? "userstory" : t;
+    }
+
+    // --- Checkpoint ---
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) return 0;
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        try {
+            return Long.parseLong(props.getProperty("rows", "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Written to a temp file and moved into place, so an interruption never leaves a torn checkpoint
+    private void writeCheckpoint(long rowsDone) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("file", file.toAbsolutePath().toString());
+        props.setProperty("rows", Long.toString(rowsDone));
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            props.store(writer, "TeamFlow import progress");
+        }
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- Row readers ---
+
+    private interface RowReader extends AutoCloseable {
+        Row next() throws IOException; // null at end of input
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private RowReader openRowReader() throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? new JsonlRowReader(reader) : new CsvRowReader(reader);
+    }
+
+    // One JSON object per line; blank lines are ignored
+    private static class JsonlRowReader implements RowReader {
+        private final BufferedReader reader;
+        private long number = 0;
+
+        JsonlRowReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                number++;
+                JsonNode node;
+                try {
+                    node = JsonCodecs.mapper().readTree(line);
+                } catch (JsonProcessingException e) {
+                    return Row.unreadable(number, "malformed JSON: " + e.getOriginalMessage(), line);
+                }
+                if (!node.isObject()) {
+                    return Row.unreadable(number, "expected a JSON object", line);
+                }
+                return new Row(number, normalizeType(text(node, "type")), text(node, "name"),
+                        text(node, "description"), text(node, "status"), text(node, "parent"));
+            }
+            return null;
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // RFC 4180 style CSV with a header row; quoted fields may contain commas, "" and newlines
+    private static class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long number = 0;
+        private int headerWidth = 0;
+        private boolean unterminatedQuote = false; // Set by readRecord when the input ends inside quotes
+
+        CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) return; // Empty file
+            headerWidth = header.size();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("type") || !columns.containsKey("name")) {
+                throw new IOException("CSV header must contain at least 'type' and 'name' columns");
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) return null;
+            } while (record.size() == 1 && record.get(0).isBlank()); // Skip blank lines
+            number++;
+            if (unterminatedQuote) {
+                return Row.unreadable(number, "unterminated quoted field (runs to the end of the file)", csvLine(record));
+            }
+            if (record.size() > headerWidth) {
+                return Row.unreadable(number, "has " + record.size() + " fields but the header has " + headerWidth, csvLine(record));
+            }
+            return new Row(number, normalizeType(field(record, "type")), field(record, "name"),
+                    field(record, "description"), field(record, "status"), field(record, "parent"));
+        }
+
+        // The record as one CSV line, quoting fields where needed
+        private static String csvLine(List<String> record) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < record.size(); i++) {
+                String field = record.get(i);
+                if (i > 0) line.append(',');
+                boolean quote = field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r");
+                line.append(quote ? '"' + field.replace("\"", "\"\"") + '"' : field);
+            }
+            return line.toString();
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) return null;
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) return null;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int nextChar = reader.read();
+                        if (nextChar == '"') {
+                            field.append('"'); // Escaped quote
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            unterminatedQuote = quoted;
+            fields.add(field.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
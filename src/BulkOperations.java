@@ -0,0 +1,135 @@
+import dto.EpicRequest;
+import dto.TaskRequest;
+import dto.UserStoryRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs many create/update/delete calls through {@link HttpClient} at once, with a bound
+ * on how many are in flight. Every operation gets its own result, so one failure doesn't
+ * abort the batch, and the overall throughput is reported at the end.
+ */
+public class BulkOperations {
+
+    public static final int DEFAULT_CONCURRENCY = Integer.getInteger("teamflow.bulk.concurrency", 8);
+
+    // A single CRUD call; same arguments as HttpClient.performEntityCrud. body is a request record
+    // (or pre-formatted JSON) for creates/updates and null for deletes. idempotencyKey (optional)
+    // is sent with creates so a repeated operation isn't applied twice.
+    public record Operation(String method, String entityType, UUID entityId, String path, Object body, String idempotencyKey) {
+
+        public Operation(String method, String entityType, UUID entityId, String path, Object body) {
+            this(method, entityType, entityId, path, body, null);
+        }
+
+        public Operation withIdempotencyKey(String key) {
+            return new Operation(method, entityType, entityId, path, body, key);
+        }
+
+        public static Operation createEpic(UUID teamId, String name, String description) {
+            return new Operation("POST", "epic", null, "/epics?teamId=" + teamId, EpicRequest.create(name, description));
+        }
+
+        public static Operation createUserStory(UUID epicId, String name, String description, String status) {
+            return new Operation("POST", "userstory", null, "/user-stories?epicId=" + epicId, UserStoryRequest.create(name, description, status));
+        }
+
+        public static Operation createTask(UUID userStoryId, String name, String description, String status) {
+            return new Operation("POST", "task", null, "/tasks?userStoryId=" + userStoryId, TaskRequest.create(name, description, status));
+        }
+
+        // request is the matching *Request record; only its non-null fields are changed
+        public static Operation update(String entityType, UUID entityId, Object request) {
+            return new Operation("PUT", entityType, entityId, HttpClient.entityPath(entityType, entityId), request);
+        }
+
+        public static Operation delete(String entityType, UUID entityId) {
+            return new Operation("DELETE", entityType, entityId, HttpClient.entityPath(entityType, entityId), null);
+        }
+    }
+
+    // Outcome of one operation: the returned DTO (null for deletes) or the error
+    public record ItemResult(int index, Operation operation, Object entity, Exception error) {
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    // Outcome of the whole batch, in submission order
+    public record Result(List<ItemResult> items, Duration elapsed) {
+
+        public long succeeded() {
+            return items.stream().filter(ItemResult::succeeded).count();
+        }
+
+        public List<ItemResult> failures() {
+            return items.stream().filter(item -> !item.succeeded()).toList();
+        }
+
+        public double operationsPerSecond() {
+            double seconds = elapsed.toNanos() / 1e9;
+            return seconds > 0 ? items.size() / seconds : 0.0;
+        }
+
+        public String summary() {
+            return String.format("%d/%d succeeded in %.2fs (%.1f ops/s)",
+                    succeeded(), items.size(), elapsed.toNanos() / 1e9, operationsPerSecond());
+        }
+    }
+
+    private BulkOperations() {}
+
+    public static Result execute(Collection<Operation> operations) throws InterruptedException {
+        return execute(operations, DEFAULT_CONCURRENCY, null);
+    }
+
+    // Runs the operations with at most maxConcurrency in flight. onItemDone (optional) is called
+    // from worker threads as each operation finishes, e.g. for progress reporting.
+    public static Result execute(Collection<Operation> operations, int maxConcurrency, Consumer<ItemResult> onItemDone) throws InterruptedException {
+        List<Operation> ops = new ArrayList<>(operations);
+        ItemResult[] results = new ItemResult[ops.size()];
+        Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < ops.size(); i++) {
+                permits.acquire(); // Blocks submission once the window is full
+                int index = i;
+                Operation op = ops.get(i);
+                executor.submit(() -> {
+                    try {
+                        results[index] = run(index, op);
+                        if (onItemDone != null) onItemDone.accept(results[index]);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } // close() waits for the submitted operations to finish
+
+        return new Result(Arrays.asList(results), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static ItemResult run(int index, Operation op) {
+        try {
+            Object entity = "team".equals(op.entityType())
+                    ? HttpClient.performTeamCrud(op.method(), op.entityId(), op.body())
+                    : HttpClient.performEntityCrud(op.method(), op.entityType(), op.entityId(), op.path(), op.body(), op.idempotencyKey());
+            return new ItemResult(index, op, entity, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ItemResult(index, op, null, e);
+        } catch (Exception e) {
+            return new ItemResult(index, op, null, e);
+        }
+    }
+}
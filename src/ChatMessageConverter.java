@@ -0,0 +1,123 @@
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dto.MessageDto;
+import dto.UserDto;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Decodes chat MESSAGE frames into MessageDto with a streaming parser from the shared
+ * MessageDto reader, keeping only what the chat uses: id, content, createdAt and the sender's
+ * id and username. The context ids, contextType and the sender's roles/enabled flag are
+ * skipped without being materialized. Senders are interned, so a busy channel reuses one
+ * UserDto per participant instead of allocating one (plus its roles list) per frame; the
+ * interned senders leave enabled/roles unset, which is why MessageStore persists only the
+ * fields decoded here.
+ * Read-only: outgoing payloads are left to the other converters.
+ */
+public final class ChatMessageConverter extends AbstractMessageConverter {
+
+    private static final int MAX_SENDERS = 1_024;
+    private static final ObjectReader READER = JsonCodecs.reader(MessageDto.class);
+
+    // Keyed by sender id (username when there is none); least recently seen evicted first
+    private final Map<Object, UserDto> senders = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, UserDto> eldest) {
+            return size() > MAX_SENDERS;
+        }
+    };
+
+    public ChatMessageConverter() {
+        super(MimeTypeUtils.APPLICATION_JSON);
+        setStrictContentTypeMatch(false); // Also accept frames without a content-type header
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MessageDto.class == clazz;
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        Object payload = message.getPayload();
+        byte[] body = payload instanceof byte[] bytes ? bytes : payload.toString().getBytes(StandardCharsets.UTF_8);
+        try (JsonParser parser = READER.createParser(body)) {
+            return readMessage(parser);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new MessageConversionException(message, "Could not read chat message: " + e.getMessage(), e);
+        }
+    }
+
+    private MessageDto readMessage(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("expected a JSON object");
+        }
+        MessageDto message = new MessageDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> message.setId(readUuid(parser));
+                case "content" -> message.setContent(parser.getValueAsString());
+                case "createdAt" -> message.setCreatedAt(parser.getValueAsString());
+                case "sender" -> message.setSender(readSender(parser));
+                default -> parser.skipChildren(); // Not used by the chat
+            }
+        }
+        return message;
+    }
+
+    private UserDto readSender(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        UUID id = null;
+        String username = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> id = readUuid(parser);
+                case "username" -> username = parser.getValueAsString();
+                default -> parser.skipChildren(); // roles, enabled
+            }
+        }
+        return intern(id, username);
+    }
+
+    private synchronized UserDto intern(UUID id, String username) {
+        Object key = id != null ? id : username;
+        if (key == null) return new UserDto();
+        UserDto sender = senders.get(key);
+        if (sender == null || !Objects.equals(sender.getUsername(), username)) {
+            sender = new UserDto(); // New participant, or renamed
+            sender.setId(id);
+            sender.setUsername(username);
+            senders.put(key, sender);
+        }
+        return sender;
+    }
+
+    private static UUID readUuid(JsonParser parser) throws IOException {
+        String text = parser.getValueAsString();
+        return text != null ? UUID.fromString(text) : null;
+    }
+}
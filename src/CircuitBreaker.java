@@ -0,0 +1,74 @@
+import java.time.Duration;
+
+/**
+ * Minimal circuit breaker for the REST backend. After {@code failureThreshold}
+ * consecutive failures it opens and rejects calls immediately for {@code openDuration};
+ * then a single trial call is let through (half-open) and its outcome decides whether
+ * the circuit closes again or stays open for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtNanos = 0;
+    private boolean trialInFlight = false;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    // Returns false if the call should fail fast. A true result must be followed by
+    // recordSuccess() or recordFailure().
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) return false; // Only one probe at a time
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    // The call was cancelled before an outcome was known; frees the half-open probe slot
+    public synchronized void recordAbandoned() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // Time left until a trial call is allowed (zero unless open)
+    public synchronized Duration remainingOpenTime() {
+        if (state != State.OPEN) return Duration.ZERO;
+        return Duration.ofNanos(Math.max(0, openNanos - (System.nanoTime() - openedAtNanos)));
+    }
+}
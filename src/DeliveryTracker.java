@@ -0,0 +1,137 @@
+import dto.MessageDto;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows outgoing chat messages until they are confirmed. A message is accepted when the broker
+ * returns its RECEIPT, and delivered when it comes back on the chat topic as our own message (the
+ * echo). The server's MessageDto doesn't carry our client id, so echoes are matched by topic,
+ * sender and content, oldest first. Both latencies go into histograms, and whichever of the two
+ * comes first runs the send's "delivered" callback (the outbox uses it to confirm the message).
+ *
+ * Receipts are optional (off by default). When on, they are switched off again if the first
+ * one never arrives, since many brokers (Spring's simple broker among them) don't send them for
+ * SEND. Once receipts have been seen to work, at most a window of sends may be unacknowledged
+ * at once; the sender waits for a permit, which bounds how far it can run ahead of the broker.
+ * Echo tracking needs neither.
+ */
+public class DeliveryTracker {
+
+    private static final int MAX_PENDING_ECHOES_PER_TOPIC = 256;
+
+    private record PendingEcho(String content, long sentAt, Runnable delivered) {}
+
+    private final boolean receipts;
+    private volatile boolean receiptsConfirmed = false; // A receipt has arrived
+    private volatile boolean receiptsUnsupported = false; // One was lost before any arrived
+    private final Semaphore window;
+    private final LatencyHistogram receiptLatency = new LatencyHistogram("send->receipt");
+    private final LatencyHistogram echoLatency = new LatencyHistogram("send->echo");
+    private final AtomicLong receiptsLost = new AtomicLong();
+    private final AtomicLong echoesMissed = new AtomicLong();
+    private final Map<String, ArrayDeque<PendingEcho>> pendingEchoes = new HashMap<>(); // Guarded by itself
+
+    public DeliveryTracker(boolean receipts, int window) {
+        this.receipts = receipts;
+        this.window = new Semaphore(Math.max(1, window));
+    }
+
+    // Whether to request a receipt for the next send
+    public boolean receiptsEnabled() {
+        return receipts && !receiptsUnsupported;
+    }
+
+    // Whether the next send needs a slot in the unacknowledged window
+    public boolean windowed() {
+        return receiptsEnabled() && receiptsConfirmed;
+    }
+
+    // Takes a slot in the unacknowledged window; false if none freed up in time
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        return window.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Gives back a slot taken for a send that didn't go out
+    public void release() {
+        window.release();
+    }
+
+    // Call right after a send went out. If it took a window slot (windowed), the slot is freed by
+    // the receipt or by its timeout. delivered runs on the receipt or the echo (possibly both).
+    public void sent(String topic, String content, long sentAt, StompSession.Receiptable receiptable, boolean windowed,
+                     Runnable delivered) {
+        synchronized (pendingEchoes) {
+            ArrayDeque<PendingEcho> queue = pendingEchoes.computeIfAbsent(topic, t -> new ArrayDeque<>());
+            if (queue.size() == MAX_PENDING_ECHOES_PER_TOPIC) {
+                queue.pollFirst(); // Never echoed (e.g. not subscribed to the topic)
+                echoesMissed.incrementAndGet();
+            }
+            queue.addLast(new PendingEcho(content, sentAt, delivered));
+        }
+        if (receiptable.getReceiptId() != null) {
+            receiptable.addReceiptTask(() -> {
+                receiptsConfirmed = true;
+                receiptLatency.recordNanos(System.nanoTime() - sentAt);
+                if (windowed) window.release();
+                delivered.run();
+            });
+            receiptable.addReceiptLostTask(() -> {
+                receiptsLost.incrementAndGet();
+                if (!receiptsConfirmed && !receiptsUnsupported) {
+                    receiptsUnsupported = true;
+                    System.err.println("Chat server sends no receipts; delivery is tracked by echo only.");
+                }
+                if (windowed) window.release();
+            });
+        }
+    }
+
+    // Checks an incoming message (received at the given System.nanoTime) for the echo of one of
+    // our sends; true if it was one
+    public boolean onMessage(String topic, MessageDto message, String username, long receivedAt) {
+        if (topic == null || username == null || message.getSender() == null
+                || !username.equals(message.getSender().getUsername())) {
+            return false;
+        }
+        PendingEcho match = null;
+        synchronized (pendingEchoes) {
+            ArrayDeque<PendingEcho> queue = pendingEchoes.get(topic);
+            if (queue == null) return false;
+            for (Iterator<PendingEcho> it = queue.iterator(); it.hasNext(); ) {
+                PendingEcho pending = it.next();
+                if (pending.content().equals(message.getContent())) {
+                    it.remove();
+                    match = pending;
+                    break;
+                }
+            }
+        }
+        if (match == null) return false; // Sent from another client of ours, or before this run
+        echoLatency.recordNanos(receivedAt - match.sentAt());
+        match.delivered().run();
+        return true;
+    }
+
+    // Multi-line report: both histograms plus what is still outstanding
+    public String summary() {
+        int awaitingEcho;
+        synchronized (pendingEchoes) {
+            awaitingEcho = pendingEchoes.values().stream().mapToInt(ArrayDeque::size).sum();
+        }
+        StringBuilder report = new StringBuilder();
+        if (receipts) {
+            if (receiptsUnsupported) report.append("receipts not supported by server; ");
+            report.append(receiptLatency.summary()).append(", receipts lost=").append(receiptsLost.get()).append('\n');
+        }
+        report.append(echoLatency.summary()).append(", awaiting echo=").append(awaitingEcho)
+                .append(", never echoed=").append(echoesMissed.get());
+        return report.toString();
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Small in-process cache for REST lookups made by {@link HttpClient}.
+ * Entries expire after a fixed TTL and the least recently used entry is evicted
+ * once the size bound is reached. Null values are cached too (e.g. "team has no epics").
+ */
+public class EntityCache {
+
+    // Loads a value on a cache miss; same checked exceptions as the HttpClient fetch methods
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException, InterruptedException;
+    }
+
+    private record Entry(Object value, long expiresAtNanos) {}
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    private long generation = 0; // Bumped on every invalidation so in-flight loads don't resurrect stale data
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public EntityCache(long ttl, TimeUnit unit, int maxEntries) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+        // Access order so iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns the cached value for key, or loads and caches it. The loader runs outside the lock,
+    // so a slow request never blocks readers of other keys.
+    @SuppressWarnings("unchecked")
+    public <V> V get(String key, Loader<V> loader) throws IOException, InterruptedException {
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAtNanos() < 0) {
+                    hits.incrementAndGet();
+                    return (V) entry.value();
+                }
+                entries.remove(key); // Expired
+            }
+        }
+        misses.incrementAndGet();
+        V value = loader.load();
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    // Returns the value if it is cached and fresh, without loading or touching the hit/miss counters.
+    // Lets other lookups reuse data that happens to be cached already (e.g. nested lists).
+    public synchronized Object getIfPresent(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && System.nanoTime() - entry.expiresAtNanos() < 0 ? entry.value() : null;
+    }
+
+    public synchronized void put(String key, Object value) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+    }
+
+    public synchronized void invalidate(String key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    // Drops every entry whose key starts with prefix (e.g. all lists of one entity type)
+    public void invalidatePrefix(String prefix) {
+        invalidateIf(key -> key.startsWith(prefix));
+    }
+
+    public synchronized void invalidateIf(Predicate<String> keyFilter) {
+        generation++;
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keyFilter.test(keys.next())) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    @Override
+    public synchronized String toString() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return String.format("EntityCache{size=%d/%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d}",
+                entries.size(), maxEntries, h, misses.get(), total == 0 ? 0.0 : 100.0 * h / total, evictions.get());
+    }
+}
@@ -1,36 +1,99 @@
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
 // Remove the explicit import for JavaTimeModule
 // import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import dto.*; // Import all DTOs
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.HttpURLConnection; // Status code constants only; requests go through HttpTransport
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 public class HttpClient {
 
     private static final String API_BASE_URL = "http://localhost:51738/api"; // Ensure this matches your backend port
-    private static String authToken;
+    private static volatile String authToken; // Read from async worker threads too
+
+    // Jackson configuration and pre-built readers/writers live in JsonCodecs (shared with the STOMP client)
+
+    // Request bodies at least this large are sent gzip-compressed. Off (0) by default: Spring/Tomcat
+    // don't decode compressed request bodies unless the server adds a filter for it.
+    private static final int COMPRESS_REQUEST_MIN_BYTES = Integer.getInteger("teamflow.http.compressRequestMinBytes", 0);
+
+    // Executor for the *Async methods: one cheap virtual thread per call, so blocking sends don't pin platform threads
+    private static final ExecutorService asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Async calls that haven't completed yet, so /back can abort them in one go
+    private static final Set<CompletableFuture<?>> inFlightCalls = ConcurrentHashMap.newKeySet();
+
+    // Validators (ETag/Last-Modified) and parsed bodies of recent GETs, keyed by auth identity + path.
+    // Lets re-list loops send conditional requests and reuse the parsed DTOs on 304 Not Modified.
+    private static final int VALIDATOR_CACHE_SIZE = Integer.getInteger("teamflow.http.validatorCacheSize", 64);
+    private static final Map<String, CachedResponse> validatorCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                    return size() > VALIDATOR_CACHE_SIZE;
+                }
+            });
+
+    // Typed GETs currently on the wire, keyed by auth identity + path + result type. Identical
+    // concurrent requests (prefetch, background refresh, interactive read) join the one in flight.
+    private static final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightGets = new ConcurrentHashMap<>();
 
-    // Jackson ObjectMapper instance
-    // Remove the JavaTimeModule registration to avoid classpath issues
-    private static final ObjectMapper objectMapper = new ObjectMapper()
-            // .registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule()) // REMOVED
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Be lenient with unknown fields
+    // Parsed body of a GET plus the validators the server sent with it.
+    // The value is shared between callers, so treat it as read-only.
+    private record CachedResponse(JavaType type, String etag, String lastModified, Object value) {}
+
+    // TTL/LRU cache in front of the list and parent lookups used by the interactive menus.
+    // Keys: "teams", "list:<type>:<teamId>", "chain:epic:<teamId>", "chain:story:<teamId>".
+    private static final EntityCache entityCache = new EntityCache(
+            Long.getLong("teamflow.cache.ttlSeconds", 30), TimeUnit.SECONDS,
+            Integer.getInteger("teamflow.cache.maxEntries", 128));
+    // Memoized team -> epic -> user story chain behind user story/task lookups
+    private static final ParentResolver parentResolver = new ParentResolver(entityCache);
 
     public static void setAuthToken(String token) {
         authToken = token;
+        validatorCache.clear(); // Entries are per identity; drop the old user's data
+        entityCache.clear();
+    }
+
+    // Hit/miss counters of the entity cache, for diagnostics
+    public static EntityCache getEntityCache() {
+        return entityCache;
     }
 
     public static String getAuthToken() {
@@ -49,71 +112,70 @@ public class HttpClient {
     }
 
     public static LoginResponseDto performAuthRequest(String action, String username, String password) throws IOException, InterruptedException {
-        URL url = new URL(API_BASE_URL + "/" + action); // Assuming action is "login" or "register"
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
-
         AuthRequest authRequest = new AuthRequest(username, password);
-        String jsonInputString = objectMapper.writeValueAsString(authRequest);
+        String jsonInputString = JsonCodecs.writer(AuthRequest.class).writeValueAsString(authRequest);
 
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = jsonInputString.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
+        // No Authorization header here: a stale token must not interfere with login/register
+        HttpRequest request = baseRequest("/" + action) // Assuming action is "login" or "register"
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonInputString, StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<InputStream> response = HttpTransport.send(request, HttpResponse.BodyHandlers.ofInputStream());
 
-        int responseCode = connection.getResponseCode();
+        int responseCode = response.statusCode();
         if (responseCode == HttpURLConnection.HTTP_OK) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                return objectMapper.readValue(br, LoginResponseDto.class);
+            try (InputStream is = bodyStream(response)) {
+                return JsonCodecs.reader(LoginResponseDto.class).readValue(is);
             }
         } else {
-            String errorDetails = readErrorStream(connection);
+            String errorDetails = readErrorStream(response);
             throw new IOException("Authentication failed: " + responseCode + " - " + errorDetails);
         }
     }
 
 
     public static List<TeamDto> fetchTeams() throws IOException, InterruptedException {
-        try {
-            String response = sendGetRequest("/teams");
-            return objectMapper.readValue(response, new TypeReference<List<TeamDto>>() {});
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to fetch teams: " + e.getMessage());
-            // Re-throw or handle more gracefully depending on requirements
-            throw e; // Or return Collections.emptyList();
-        }
+        return entityCache.get("teams", () -> {
+            try {
+                return sendGetRequest("/teams", JsonCodecs.listReader(TeamDto.class));
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Failed to fetch teams: " + e.getMessage());
+                // Re-throw or handle more gracefully depending on requirements
+                throw e; // Or return Collections.emptyList();
+            }
+        });
     }
 
 
-    // Note: Accepts pre-formatted jsonPayload for PUT/POST to maintain compatibility with current TeamFlowClient
-    // Ideally, this should accept a DTO. Parses the response using Jackson.
+    // Accepts a pre-formatted jsonPayload for PUT/POST; prefer passing a TeamRequest. Parses the response using Jackson.
     public static TeamDto performTeamCrud(String method, UUID teamId, String jsonPayload) throws IOException, InterruptedException {
+        return performTeamCrud(method, teamId, (Object) jsonPayload);
+    }
+
+    // body is either a TeamRequest or a pre-formatted JSON string (null for DELETE)
+    public static TeamDto performTeamCrud(String method, UUID teamId, Object body) throws IOException, InterruptedException {
         String path = "/teams";
         if (teamId != null) {
             path += "/" + teamId;
         }
-        HttpURLConnection connection = prepareCrudConnection(method, path);
+        HttpResponse<InputStream> response = sendCrudRequest(method, path, body, null);
 
-        if (jsonPayload != null && (method.equals("POST") || method.equals("PUT"))) {
-            connection.setDoOutput(true);
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonPayload.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-        }
-
-        int responseCode = connection.getResponseCode();
+        int responseCode = response.statusCode();
         if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_CREATED) {
-            if (method.equals("DELETE")) return null; // DELETE returns no body
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                return objectMapper.readValue(br, TeamDto.class);
+            invalidateAfterWrite(method, "team", teamId);
+            if (method.equals("DELETE")) { // DELETE returns no body
+                response.body().close();
+                return null;
+            }
+            try (InputStream is = bodyStream(response)) {
+                return JsonCodecs.reader(TeamDto.class).readValue(is);
             }
         } else if (responseCode == HttpURLConnection.HTTP_NO_CONTENT && method.equals("DELETE")) {
+            invalidateAfterWrite(method, "team", teamId);
+            response.body().close();
             return null; // Successful delete
         } else {
-            String errorDetails = readErrorStream(connection);
+            String errorDetails = readErrorStream(response);
             throw new IOException(String.format("Team operation failed (%s): %d - %s", method, responseCode, errorDetails));
         }
     }
@@ -122,113 +184,160 @@ public class HttpClient {
     // Returns List<?> because the specific DTO type depends on contextType.
     // Caller needs to handle casting or use instanceof.
     public static List<?> fetchContextEntities(String contextType, UUID currentTeamId) throws IOException, InterruptedException {
-        String path = "";
-        TypeReference<?> typeRef = null;
+        return fetchContextEntities(contextType, currentTeamId, false);
+    }
 
+    // quiet: report nothing on stderr (background prefetch); failures still reach the caller
+    private static List<?> fetchContextEntities(String contextType, UUID currentTeamId, boolean quiet) throws IOException, InterruptedException {
+        switch (contextType) {
+            case "sprint": case "epic": case "userstory": case "task": break;
+            default:
+                System.err.println("Unknown context type: " + contextType);
+                return new ArrayList<>(); // Or throw exception
+        }
+
+        ObjectReader listReader = JsonCodecs.listReader(getDtoClassForEntityType(contextType));
+        return entityCache.get("list:" + contextType + ":" + currentTeamId, () -> {
+            String path = contextEntitiesPath(contextType, currentTeamId, quiet);
+            if (path == null) {
+                return new ArrayList<>(); // Return empty list if no parent epic/user story
+            }
+
+            try {
+                // Add explicit cast here
+                return (List<?>) sendGetRequest(path, listReader);
+            } catch (IOException | InterruptedException e) {
+                if (!quiet) System.err.println("Failed to fetch " + contextType + "s: " + e.getMessage());
+                throw e; // Or return empty list
+            }
+        });
+    }
+
+    // Incremental variant of fetchContextEntities: elements are parsed as they arrive instead of
+    // materializing the whole list. Close the stream (try-with-resources) to release the connection.
+    public static Stream<? extends NamedEntity> streamContextEntities(String contextType, UUID currentTeamId) throws IOException, InterruptedException {
+        Class<?> dtoClass = getDtoClassForEntityType(contextType);
+        if (dtoClass == null || !NamedEntity.class.isAssignableFrom(dtoClass)) {
+            System.err.println("Unknown context type: " + contextType);
+            return Stream.empty();
+        }
+        String path = contextEntitiesPath(contextType, currentTeamId, false);
+        if (path == null) {
+            return Stream.empty();
+        }
+        return streamGetRequest(path, dtoClass.asSubclass(NamedEntity.class));
+    }
+
+    // Builds the list path for a context type, resolving parent epic/user story where needed.
+    // Returns null (after reporting why, unless quiet) when the required parent doesn't exist.
+    private static String contextEntitiesPath(String contextType, UUID currentTeamId, boolean quiet) throws IOException, InterruptedException {
         switch (contextType) {
             case "sprint":
-                path = "/sprints/teams/" + currentTeamId + "/sprints";
-                typeRef = new TypeReference<List<SprintDto>>() {};
-                break;
+                return "/sprints/teams/" + currentTeamId + "/sprints";
             case "epic":
-                path = "/epics?teamId=" + currentTeamId;
-                typeRef = new TypeReference<List<EpicDto>>() {};
-                break;
+                return "/epics?teamId=" + currentTeamId;
             case "userstory":
-                UUID epicId = fetchFirstEpicId(currentTeamId); // Fetch epic ID first
+                UUID epicId = parentResolver.firstEpicId(currentTeamId, quiet); // Fetch epic ID first
                 if (epicId == null) {
-                    System.err.println("No epics found for team " + currentTeamId + ". Cannot fetch user stories.");
-                    return new ArrayList<>(); // Return empty list if no parent epic
+                    if (!quiet) System.err.println("No epics found for team " + currentTeamId + ". Cannot fetch user stories.");
+                    return null;
                 }
-                path = "/user-stories?epicId=" + epicId;
-                typeRef = new TypeReference<List<UserStoryDto>>() {};
-                break;
+                return "/user-stories?epicId=" + epicId;
             case "task":
-                UUID userStoryId = fetchFirstUserStoryId(currentTeamId); // Fetch user story ID first
+                UUID userStoryId = parentResolver.firstUserStoryId(currentTeamId, quiet); // Fetch user story ID first
                 if (userStoryId == null) {
-                     System.err.println("No user stories found for team " + currentTeamId + ". Cannot fetch tasks.");
-                    return new ArrayList<>(); // Return empty list if no parent user story
+                    if (!quiet) System.err.println("No user stories found for team " + currentTeamId + ". Cannot fetch tasks.");
+                    return null;
                 }
-                path = "/tasks?userStoryId=" + userStoryId;
-                typeRef = new TypeReference<List<TaskDto>>() {};
-                break;
+                return "/tasks?userStoryId=" + userStoryId;
             default:
-                System.err.println("Unknown context type: " + contextType);
-                return new ArrayList<>(); // Or throw exception
-        }
-
-        try {
-            String response = sendGetRequest(path);
-            if (typeRef != null) {
-                // Add explicit cast here
-                return (List<?>) objectMapper.readValue(response, typeRef);
-            } else {
-                return new ArrayList<>(); // Should not happen if contextType is valid
-            }
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to fetch " + contextType + "s: " + e.getMessage());
-            throw e; // Or return empty list
+                return null;
         }
     }
 
-     // Helper method, potentially refactor to avoid multiple fetches if performance is critical
-     static UUID fetchFirstEpicId(UUID currentTeamId) throws IOException, InterruptedException {
-        String path = "/epics?teamId=" + currentTeamId;
-        try {
-            String response = sendGetRequest(path);
-            List<EpicDto> epics = objectMapper.readValue(response, new TypeReference<List<EpicDto>>() {});
-            return epics != null && !epics.isEmpty() ? epics.get(0).getId() : null;
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to fetch epics for team " + currentTeamId + ": " + e.getMessage());
-            throw e;
-        }
+    // First epic of a team; resolved once per team and reused from nested team data when available
+    static UUID fetchFirstEpicId(UUID currentTeamId) throws IOException, InterruptedException {
+        return parentResolver.firstEpicId(currentTeamId);
     }
 
-    // Helper method, potentially refactor
+    // First user story of the team's first epic; see ParentResolver
     static UUID fetchFirstUserStoryId(UUID currentTeamId) throws IOException, InterruptedException {
-        UUID epicId = fetchFirstEpicId(currentTeamId);
-        if (epicId == null) return null;
+        return parentResolver.firstUserStoryId(currentTeamId);
+    }
 
-        String path = "/user-stories?epicId=" + epicId;
-        try {
-            String response = sendGetRequest(path);
-            List<UserStoryDto> userStories = objectMapper.readValue(response, new TypeReference<List<UserStoryDto>>() {});
-            return userStories != null && !userStories.isEmpty() ? userStories.get(0).getId() : null;
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to fetch user stories for epic " + epicId + ": " + e.getMessage());
-            throw e;
+    // Drops exactly the cached lookups a successful write can have changed.
+    // Entity writes don't carry the team id, so lists of that type are dropped for every team.
+    private static void invalidateAfterWrite(String method, String entityType, UUID entityId) {
+        boolean membershipChanged = !method.equals("PUT"); // Create/delete can change which epic/story comes first
+        switch (entityType) {
+            case "team":
+                entityCache.invalidate("teams");
+                if (method.equals("DELETE") && entityId != null) {
+                    entityCache.invalidateIf(key -> key.endsWith(":" + entityId)); // Everything scoped to that team
+                }
+                break;
+            case "sprint":
+                entityCache.invalidatePrefix("list:sprint:");
+                break;
+            case "epic":
+                entityCache.invalidate("teams"); // TeamDto nests its epics
+                entityCache.invalidatePrefix("list:epic:");
+                if (membershipChanged) {
+                    entityCache.invalidatePrefix("chain:");
+                    entityCache.invalidatePrefix("list:userstory:");
+                    entityCache.invalidatePrefix("list:task:");
+                }
+                break;
+            case "userstory":
+                entityCache.invalidate("teams"); // Nested through TeamDto.epics[].userStories
+                entityCache.invalidatePrefix("list:userstory:");
+                if (membershipChanged) {
+                    entityCache.invalidatePrefix("chain:"); // The epic entry may hold a nested first story
+                    entityCache.invalidatePrefix("list:task:");
+                }
+                break;
+            case "task":
+                entityCache.invalidatePrefix("list:task:");
+                break;
+            default:
+                entityCache.clear(); // Unknown type: be safe
         }
     }
 
 
-    // Note: Accepts pre-formatted jsonPayload for PUT/POST. Parses response using Jackson.
-    // Returns Object, caller needs to cast based on entityType.
+    // Accepts a pre-formatted jsonPayload for PUT/POST; the typed create/update methods below are preferred.
+    // Parses response using Jackson. Returns Object, caller needs to cast based on entityType.
     public static Object performEntityCrud(String method, String entityType, UUID entityId, String path, String jsonPayload) throws IOException, InterruptedException {
-        HttpURLConnection connection = prepareCrudConnection(method, path); // Path should include ID or query params as needed
+        return performEntityCrud(method, entityType, entityId, path, jsonPayload, null);
+    }
 
-        if (jsonPayload != null && (method.equals("POST") || method.equals("PUT"))) {
-            connection.setDoOutput(true);
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonPayload.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-        }
+    // Same as above with a caller-chosen Idempotency-Key for POSTs, e.g. one derived from an import row,
+    // so a create repeated after a crash or retry is recognized by the server as the same request.
+    // body is either a request record (EpicRequest, TaskRequest, ...) or a pre-formatted JSON string.
+    public static Object performEntityCrud(String method, String entityType, UUID entityId, String path, Object body, String idempotencyKey) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = sendCrudRequest(method, path, body, idempotencyKey); // Path should include ID or query params as needed
 
-        int responseCode = connection.getResponseCode();
+        int responseCode = response.statusCode();
         if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_CREATED) {
-            if (method.equals("DELETE")) return null; // DELETE returns no body
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            invalidateAfterWrite(method, entityType, entityId);
+            if (method.equals("DELETE")) { // DELETE returns no body
+                response.body().close();
+                return null;
+            }
+            try (InputStream is = bodyStream(response)) {
                 Class<?> dtoClass = getDtoClassForEntityType(entityType);
                 if (dtoClass != null) {
-                    return objectMapper.readValue(br, dtoClass);
+                    return JsonCodecs.reader(dtoClass).readValue(is);
                 } else {
                     throw new IOException("Unknown entity type for response parsing: " + entityType);
                 }
             }
         } else if (responseCode == HttpURLConnection.HTTP_NO_CONTENT && method.equals("DELETE")) {
+            invalidateAfterWrite(method, entityType, entityId);
+            response.body().close();
             return null; // Successful delete
         } else {
-            String errorDetails = readErrorStream(connection);
+            String errorDetails = readErrorStream(response);
             throw new IOException(String.format("%s operation failed (%s on %s): %d - %s",
                     capitalize(entityType), method, path, responseCode, errorDetails));
         }
@@ -247,88 +356,349 @@ public class HttpClient {
     }
 
 
-    // --- NEW CREATE METHODS (Using Jackson for Request Body) ---
+    // --- CREATE / UPDATE METHODS (typed request bodies) ---
 
     public static EpicDto createEpic(UUID teamId, String name, String description) throws IOException, InterruptedException {
-        String path = "/epics?teamId=" + teamId;
-        Map<String, String> payload = new HashMap<>();
-        payload.put("name", name);
-        payload.put("description", description);
-        String jsonPayload = objectMapper.writeValueAsString(payload);
+        return createEpic(teamId, EpicRequest.create(name, description));
+    }
+
+    public static EpicDto createEpic(UUID teamId, EpicRequest request) throws IOException, InterruptedException {
         // Cast the result, assuming performEntityCrud returns the correct type based on entityType
-        return (EpicDto) performEntityCrud("POST", "epic", null, path, jsonPayload);
+        return (EpicDto) performEntityCrud("POST", "epic", null, "/epics?teamId=" + teamId, request, null);
     }
 
     public static UserStoryDto createUserStory(UUID epicId, String name, String description, String status) throws IOException, InterruptedException {
-        String path = "/user-stories?epicId=" + epicId;
-        Map<String, String> payload = new HashMap<>();
-        payload.put("name", name);
-        payload.put("description", description);
-        if (status != null && !status.isEmpty()) {
-            payload.put("status", status);
-        }
-        String jsonPayload = objectMapper.writeValueAsString(payload);
-        return (UserStoryDto) performEntityCrud("POST", "userstory", null, path, jsonPayload);
+        return createUserStory(epicId, UserStoryRequest.create(name, description, status));
+    }
+
+    public static UserStoryDto createUserStory(UUID epicId, UserStoryRequest request) throws IOException, InterruptedException {
+        return (UserStoryDto) performEntityCrud("POST", "userstory", null, "/user-stories?epicId=" + epicId, request, null);
     }
 
     public static TaskDto createTask(UUID userStoryId, String name, String description, String status) throws IOException, InterruptedException {
-        String path = "/tasks?userStoryId=" + userStoryId;
-         Map<String, String> payload = new HashMap<>();
-        payload.put("name", name);
-        payload.put("description", description);
-         if (status != null && !status.isEmpty()) {
-            payload.put("status", status);
+        return createTask(userStoryId, TaskRequest.create(name, description, status));
+    }
+
+    public static TaskDto createTask(UUID userStoryId, TaskRequest request) throws IOException, InterruptedException {
+        return (TaskDto) performEntityCrud("POST", "task", null, "/tasks?userStoryId=" + userStoryId, request, null);
+    }
+
+    public static SprintDto createSprint(SprintRequest request) throws IOException, InterruptedException {
+        return (SprintDto) performEntityCrud("POST", "sprint", null, "/sprints/start", request, null);
+    }
+
+    // Partial update of a sprint/epic/user story/task: only the non-null fields of request are sent
+    public static Object updateEntity(String entityType, UUID entityId, Object request) throws IOException, InterruptedException {
+        return performEntityCrud("PUT", entityType, entityId, entityPath(entityType, entityId), request, null);
+    }
+
+    // Path of a single sprint/epic/user story/task, as used by PUT and DELETE
+    static String entityPath(String entityType, UUID entityId) {
+        switch (entityType) {
+            case "sprint": return "/sprints/" + entityId;
+            case "epic": return "/epics/" + entityId;
+            case "userstory": return "/user-stories/" + entityId;
+            case "task": return "/tasks/" + entityId;
+            default: throw new IllegalArgumentException("Unknown entity type: " + entityType);
         }
-        String jsonPayload = objectMapper.writeValueAsString(payload);
-        return (TaskDto) performEntityCrud("POST", "task", null, path, jsonPayload);
     }
 
-    // --- END NEW CREATE METHODS ---
+    // --- END CREATE / UPDATE METHODS ---
+
+
+    // --- ASYNC API ---
+    // Non-blocking variants of the calls above. Each runs the blocking call on a virtual thread and
+    // returns a CompletableFuture that can be composed with others. A non-null deadline fails the
+    // future with a TimeoutException once it elapses; cancelling or timing out interrupts the worker,
+    // which aborts the underlying HTTP exchange.
+
+    public static CompletableFuture<List<TeamDto>> fetchTeamsAsync(Duration deadline) {
+        return supplyAsync(HttpClient::fetchTeams, deadline);
+    }
+
+    // Meant for background prefetch: prints nothing, failures only complete the future exceptionally
+    public static CompletableFuture<List<?>> fetchContextEntitiesAsync(String contextType, UUID currentTeamId, Duration deadline) {
+        return supplyAsync(() -> fetchContextEntities(contextType, currentTeamId, true), deadline);
+    }
+
+    public static CompletableFuture<List<MessageDto>> fetchMessagesAsync(String currentContextType, UUID currentContextId, Duration deadline) {
+        return supplyAsync(() -> fetchMessages(currentContextType, currentContextId), deadline);
+    }
+
+    public static CompletableFuture<List<MessageDto>> fetchMessagesAsync(String currentContextType, UUID currentContextId, int pageSize, UUID before, Duration deadline) {
+        return supplyAsync(() -> fetchMessages(currentContextType, currentContextId, pageSize, before), deadline);
+    }
 
+    public static CompletableFuture<TeamDto> performTeamCrudAsync(String method, UUID teamId, String jsonPayload, Duration deadline) {
+        return supplyAsync(() -> performTeamCrud(method, teamId, jsonPayload), deadline);
+    }
+
+    public static CompletableFuture<Object> performEntityCrudAsync(String method, String entityType, UUID entityId, String path, String jsonPayload, Duration deadline) {
+        return supplyAsync(() -> performEntityCrud(method, entityType, entityId, path, jsonPayload), deadline);
+    }
+
+    public static CompletableFuture<EpicDto> createEpicAsync(UUID teamId, String name, String description, Duration deadline) {
+        return supplyAsync(() -> createEpic(teamId, name, description), deadline);
+    }
+
+    public static CompletableFuture<UserStoryDto> createUserStoryAsync(UUID epicId, String name, String description, String status, Duration deadline) {
+        return supplyAsync(() -> createUserStory(epicId, name, description, status), deadline);
+    }
+
+    public static CompletableFuture<TaskDto> createTaskAsync(UUID userStoryId, String name, String description, String status, Duration deadline) {
+        return supplyAsync(() -> createTask(userStoryId, name, description, status), deadline);
+    }
 
-    private static HttpURLConnection prepareCrudConnection(String method, String path) throws IOException {
-        URL url = new URL(API_BASE_URL + path);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod(method);
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json"); // Good practice to add Accept header
+    // Cancels every async call still in flight (used when the user navigates away with /back)
+    public static int cancelInFlight() {
+        int cancelled = 0;
+        for (CompletableFuture<?> call : inFlightCalls) {
+            if (call.cancel(true)) cancelled++;
+        }
+        return cancelled;
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Callable<T> call, Duration deadline) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        inFlightCalls.add(result);
+        Future<?> worker = asyncExecutor.submit(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        if (deadline != null) {
+            result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        result.whenComplete((value, error) -> {
+            inFlightCalls.remove(result);
+            // CompletableFuture.cancel doesn't interrupt, so stop the worker ourselves
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                worker.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    // --- END ASYNC API ---
+
+
+    // Request with base URL, read timeout and Accept header, but no credentials
+    private static HttpRequest.Builder baseRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(API_BASE_URL + path))
+                .timeout(HttpTransport.requestTimeout(path))
+                .header("Accept", "application/json") // Good practice to add Accept header
+                .header("Accept-Encoding", "gzip, deflate"); // Decoded in bodyStream()
+    }
+
+    // Request carrying the current bearer token (if logged in)
+    private static HttpRequest.Builder newRequest(String path) {
+        HttpRequest.Builder builder = baseRequest(path);
         if (authToken != null) {
-            connection.setRequestProperty("Authorization", "Bearer " + authToken);
+            builder.header("Authorization", "Bearer " + authToken);
         }
-        return connection;
+        return builder;
+    }
+
+    // Sends a CRUD request over the shared transport; the caller must consume or close the body.
+    // POSTs always carry an Idempotency-Key (a fresh one unless the caller supplies a stable key),
+    // which lets the transport retry them safely and the server drop duplicates.
+    private static HttpResponse<InputStream> sendCrudRequest(String method, String path, Object body, String idempotencyKey) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = newRequest(path).header("Content-Type", "application/json");
+        if (method.equals("POST")) {
+            builder.header("Idempotency-Key", idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString());
+        }
+        if (body != null && (method.equals("POST") || method.equals("PUT"))) {
+            builder.method(method, jsonBody(builder, body));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return HttpTransport.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
     }
 
 
     // Sends GET request and returns the raw response body as String
     public static String sendGetRequest(String path) throws IOException, InterruptedException {
-        URL url = new URL(API_BASE_URL + path);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("Accept", "application/json");
-        if (authToken != null) {
-            connection.setRequestProperty("Authorization", "Bearer " + authToken);
+        try (InputStream is = openGetStream(path)) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
         }
+    }
 
-        int responseCode = connection.getResponseCode();
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                StringBuilder response = new StringBuilder();
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    // Append directly, Jackson handles whitespace
-                    response.append(responseLine);
+    // Sends GET request and parses the body straight from the response stream (no intermediate String).
+    // Only one request per path and identity is on the wire at a time: concurrent callers wait for it
+    // and share the parsed result (treat it as read-only). The reader decides the result type;
+    // use the pre-built ones from JsonCodecs.
+    @SuppressWarnings("unchecked")
+    public static <T> T sendGetRequest(String path, ObjectReader reader) throws IOException, InterruptedException {
+        String flightKey = validatorCacheKey(path) + " " + reader.getValueType();
+        while (true) {
+            CompletableFuture<Object> flight = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlightGets.putIfAbsent(flightKey, flight);
+            if (existing == null) {
+                // We're the leader: do the request and publish the outcome to any waiters
+                try {
+                    T value = sendConditionalGet(path, reader);
+                    flight.complete(value);
+                    return value;
+                } catch (Throwable t) {
+                    flight.completeExceptionally(t);
+                    throw t;
+                } finally {
+                    inFlightGets.remove(flightKey, flight);
                 }
-                return response.toString();
             }
+
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException || cause instanceof CancellationException) {
+                    // The leader was cancelled (e.g. an aborted prefetch), not us: issue our own request
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+                    continue;
+                }
+                if (cause instanceof IOException) throw new IOException(cause.getMessage(), cause);
+                if (cause instanceof RuntimeException re) throw re;
+                if (cause instanceof Error err) throw err;
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    // If an earlier response carried an ETag/Last-Modified, the request is conditional and a
+    // 304 Not Modified returns the previously parsed value without downloading or parsing again.
+    @SuppressWarnings("unchecked")
+    private static <T> T sendConditionalGet(String path, ObjectReader reader) throws IOException, InterruptedException {
+        String cacheKey = validatorCacheKey(path);
+        CachedResponse cached = validatorCache.get(cacheKey);
+        if (cached != null && !cached.type().equals(reader.getValueType())) {
+            cached = null; // Same path parsed as a different type; can't reuse it
+        }
+
+        HttpRequest.Builder builder = newRequest(path).GET();
+        if (cached != null) {
+            if (cached.etag() != null) builder.header("If-None-Match", cached.etag());
+            if (cached.lastModified() != null) builder.header("If-Modified-Since", cached.lastModified());
+        }
+        HttpResponse<InputStream> response = HttpTransport.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        int responseCode = response.statusCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            response.body().close();
+            return (T) cached.value();
+        } else if (responseCode == HttpURLConnection.HTTP_OK) {
+            T value;
+            try (InputStream is = bodyStream(response)) {
+                value = reader.readValue(is);
+            }
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            if (etag != null || lastModified != null) {
+                validatorCache.put(cacheKey, new CachedResponse(reader.getValueType(), etag, lastModified, value));
+            } else {
+                validatorCache.remove(cacheKey);
+            }
+            return value;
+        } else {
+            String errorDetails = readErrorStream(response);
+            throw new IOException(String.format("GET request failed for path %s: %d - %s", path, responseCode, errorDetails));
+        }
+    }
+
+    // Cached responses must never be served to a different user
+    private static String validatorCacheKey(String path) {
+        String token = authToken;
+        return (token != null ? token : "anonymous") + " " + path;
+    }
+
+    // Sends GET request for a JSON array and returns a lazily parsed stream of its elements.
+    // Memory stays flat regardless of payload size; the caller must close the stream.
+    public static <T> Stream<T> streamGetRequest(String path, Class<T> elementType) throws IOException, InterruptedException {
+        InputStream is = openGetStream(path);
+        MappingIterator<T> iterator;
+        try {
+            iterator = JsonCodecs.reader(elementType).readValues(is);
+        } catch (IOException | RuntimeException e) {
+            is.close();
+            throw e;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException ignored) {
+                        // Nothing useful to do if the connection is already gone
+                    }
+                });
+    }
+
+    // Opens a GET request and returns the body stream on 200; the caller must close it
+    private static InputStream openGetStream(String path) throws IOException, InterruptedException {
+        HttpRequest request = newRequest(path).GET().build();
+        HttpResponse<InputStream> response = HttpTransport.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        int responseCode = response.statusCode();
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+            return bodyStream(response);
         } else {
-            String errorDetails = readErrorStream(connection);
+            String errorDetails = readErrorStream(response);
             throw new IOException(String.format("GET request failed for path %s: %d - %s", path, responseCode, errorDetails));
         }
     }
 
+    // Response body with any Content-Encoding undone. The JDK client doesn't decompress on its own,
+    // so this inflates on the fly while Jackson reads, without buffering the whole payload.
+    private static InputStream bodyStream(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(response.body(), 8192);
+            case "deflate":
+                return new InflaterInputStream(response.body());
+            default:
+                return response.body();
+        }
+    }
+
+    // Request body publisher for a JSON payload; when teamflow.http.compressRequestMinBytes is set,
+    // large bodies (bulk payloads, long descriptions) are gzipped and marked with Content-Encoding.
+    // Request records are written by Jackson's generator straight into the buffer the publisher
+    // sends from, so no intermediate String, Map or extra byte[] copy is made.
+    private static HttpRequest.BodyPublisher jsonBody(HttpRequest.Builder builder, Object body) throws IOException {
+        BodyBuffer buffer = new BodyBuffer(256);
+        if (body instanceof String jsonPayload) {
+            buffer.write(jsonPayload.getBytes(StandardCharsets.UTF_8));
+        } else {
+            JsonCodecs.writer(body.getClass()).writeValue(buffer, body);
+        }
+        if (COMPRESS_REQUEST_MIN_BYTES > 0 && buffer.size() >= COMPRESS_REQUEST_MIN_BYTES) {
+            BodyBuffer compressed = new BodyBuffer(buffer.size() / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                buffer.writeTo(gzip);
+            }
+            builder.header("Content-Encoding", "gzip");
+            buffer = compressed;
+        }
+        // Retries re-send from the same array, so it must not be reused for anything else
+        return HttpRequest.BodyPublishers.ofByteArray(buffer.array(), 0, buffer.size());
+    }
+
+    // ByteArrayOutputStream that hands out its backing array instead of copying it
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
     // Helper to read error stream
-    private static String readErrorStream(HttpURLConnection connection) {
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
+    private static String readErrorStream(HttpResponse<InputStream> response) {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(bodyStream(response), StandardCharsets.UTF_8))) {
             StringBuilder errorResponse = new StringBuilder();
             String responseLine;
             while ((responseLine = br.readLine()) != null) {
@@ -344,10 +714,66 @@ public class HttpClient {
 
     // fetchMessages updated to use correct nested URL structure
     public static List<MessageDto> fetchMessages(String currentContextType, UUID currentContextId) {
+        String path = messagesPath(currentContextType, currentContextId);
+        if (path == null) {
+            return new ArrayList<>();
+        }
+
+        try {
+            // Parse the JSON response into a list of MessageDto objects
+            // Note: MessageDto.createdAt is String due to JavaTimeModule issues
+            return sendGetRequest(path, JsonCodecs.listReader(MessageDto.class));
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Failed to fetch messages for " + currentContextType + "/" + currentContextId + " from path " + path + ": " + e.getMessage());
+            // Optionally log the stack trace for debugging: e.printStackTrace();
+            return new ArrayList<>(); // Return empty list on error
+        } catch (Exception e) {
+            // Catch unexpected parsing errors
+             System.err.println("Unexpected error parsing messages for " + currentContextType + "/" + currentContextId + ": " + e.getMessage());
+             e.printStackTrace();
+             return new ArrayList<>();
+        }
+    }
+
+    // One page of history: the pageSize most recent messages older than the message with id before
+    // (or the latest messages if before is null), oldest first. A page shorter than pageSize means
+    // there is nothing older. Unlike fetchMessages(type, id), errors are thrown to the caller.
+    public static List<MessageDto> fetchMessages(String currentContextType, UUID currentContextId, int pageSize, UUID before) throws IOException, InterruptedException {
+        String path = messagesPath(currentContextType, currentContextId);
+        if (path == null) {
+            return new ArrayList<>();
+        }
+        path += "?size=" + pageSize + (before != null ? "&before=" + before : "");
+        return sendGetRequest(path, JsonCodecs.listReader(MessageDto.class));
+    }
+
+    // Forward page for delta sync: the pageSize oldest messages newer than the message with id after,
+    // oldest first. A page shorter than pageSize means the caller is up to date.
+    public static List<MessageDto> fetchMessagesAfter(String currentContextType, UUID currentContextId, UUID after, int pageSize) throws IOException, InterruptedException {
+        String path = messagesPath(currentContextType, currentContextId);
+        if (path == null) {
+            return new ArrayList<>();
+        }
+        path += "?size=" + pageSize + "&after=" + after;
+        return sendGetRequest(path, JsonCodecs.listReader(MessageDto.class));
+    }
+
+    // Incremental variant of fetchMessages for long histories: messages are parsed one at a time
+    // as the caller consumes them. Close the stream (try-with-resources) to release the connection.
+    public static Stream<MessageDto> streamMessages(String currentContextType, UUID currentContextId) throws IOException, InterruptedException {
+        String path = messagesPath(currentContextType, currentContextId);
+        if (path == null) {
+            return Stream.empty();
+        }
+        return streamGetRequest(path, MessageDto.class);
+    }
+
+    // Builds the nested messages path for a context, or returns null (after reporting why) if it can't
+    private static String messagesPath(String currentContextType, UUID currentContextId) {
         // Validate inputs
         if (currentContextType == null || currentContextType.isEmpty() || currentContextId == null) {
             System.err.println("Error fetching messages: Context type and ID are required.");
-            return new ArrayList<>();
+            return null;
         }
 
         // Determine the plural form for the URL path
@@ -367,29 +793,13 @@ public class HttpClient {
                 break;
             default:
                 System.err.println("Error fetching messages: Unknown context type '" + currentContextType + "' for URL construction.");
-                return new ArrayList<>();
+                return null;
         }
 
         // Construct the correct nested path
-        String path = String.format("/%s/%s/messages",
-                                    contextTypePlural,
-                                    currentContextId.toString());
-
-        try {
-            String response = sendGetRequest(path);
-            // Parse the JSON response into a list of MessageDto objects
-            // Note: MessageDto.createdAt is String due to JavaTimeModule issues
-            return objectMapper.readValue(response, new TypeReference<List<MessageDto>>() {});
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to fetch messages for " + currentContextType + "/" + currentContextId + " from path " + path + ": " + e.getMessage());
-            // Optionally log the stack trace for debugging: e.printStackTrace();
-            return new ArrayList<>(); // Return empty list on error
-        } catch (Exception e) {
-            // Catch unexpected parsing errors
-             System.err.println("Unexpected error parsing messages for " + currentContextType + "/" + currentContextId + ": " + e.getMessage());
-             e.printStackTrace();
-             return new ArrayList<>();
-        }
+        return String.format("/%s/%s/messages",
+                             contextTypePlural,
+                             currentContextId.toString());
     }
 
 
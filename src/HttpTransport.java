@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Shared HTTP transport for all REST calls made by {@link HttpClient}.
+ * Wraps a single java.net.http client so connections are pooled and kept alive
+ * per host (and upgraded to HTTP/2 where the server offers it) instead of
+ * opening a fresh HttpURLConnection for every request.
+ *
+ * Every send also goes through a small resilience layer: per-endpoint timeouts,
+ * jittered exponential retry for idempotent requests (GET/PUT/DELETE, and POSTs that
+ * carry an Idempotency-Key), and a circuit breaker that fails fast while the backend
+ * keeps failing, so a partial outage costs a bounded amount of time per call.
+ */
+public class HttpTransport {
+
+    // Defaults, overridable with -Dteamflow.http.* system properties or configure()
+    private static volatile Duration connectTimeout = Duration.ofMillis(Long.getLong("teamflow.http.connectTimeoutMs", 5_000));
+    private static volatile Duration requestTimeout = Duration.ofMillis(Long.getLong("teamflow.http.requestTimeoutMs", 30_000));
+    private static volatile java.net.http.HttpClient.Version version =
+            Boolean.parseBoolean(System.getProperty("teamflow.http.http2", "true"))
+                    ? java.net.http.HttpClient.Version.HTTP_2
+                    : java.net.http.HttpClient.Version.HTTP_1_1;
+
+    private static java.net.http.HttpClient client = null; // Built lazily, shared by every request
+
+    // Retry policy: attempts include the first try; delays are "full jitter" between 0 and the capped backoff
+    private static final int MAX_ATTEMPTS = Integer.getInteger("teamflow.http.maxAttempts", 3);
+    private static final long BASE_BACKOFF_MS = Long.getLong("teamflow.http.baseBackoffMs", 200);
+    private static final long MAX_BACKOFF_MS = Long.getLong("teamflow.http.maxBackoffMs", 2_000);
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private static final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            Integer.getInteger("teamflow.http.breakerFailures", 5),
+            Duration.ofMillis(Long.getLong("teamflow.http.breakerOpenMs", 10_000)));
+
+    // Per-endpoint timeouts, matched against the request path in order; first match wins.
+    // The built-in ones are a share of requestTimeout (1/3 for auth and CRUD, 2/3 for messages,
+    // i.e. 10s/20s with the 30s default), so -Dteamflow.http.requestTimeoutMs and configure()
+    // scale them too; -Dteamflow.http.{auth,messages,crud}TimeoutMs pin one to a fixed value.
+    private record EndpointTimeout(Pattern pathPattern, Duration fixed, double share) {
+
+        Duration timeout() {
+            return fixed != null ? fixed : Duration.ofMillis(Math.max(1, (long) (requestTimeout.toMillis() * share)));
+        }
+    }
+    private static final List<EndpointTimeout> endpointTimeouts = new CopyOnWriteArrayList<>(List.of(
+            builtInTimeout("^/(login|register)\\b", "auth", 1 / 3.0),
+            builtInTimeout("/messages\\b", "messages", 2 / 3.0),
+            builtInTimeout("^/(teams|epics|user-stories|tasks|sprints)\\b", "crud", 1 / 3.0)));
+
+    static {
+        // Pool tuning for the JDK client. These are read once when the first client is built,
+        // so only set them if the user hasn't passed their own values on the command line.
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", System.getProperty("teamflow.http.poolSize", "16"));
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", System.getProperty("teamflow.http.keepAliveSeconds", "120"));
+    }
+
+    // The backend couldn't be reached or didn't answer (connect failure, reset, timeout, or the
+    // circuit is open), as opposed to a response rejecting the request. Worth retrying later.
+    public static class UnavailableException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private HttpTransport() {}
+
+    // Whether the error (or one of its causes) is an UnavailableException
+    public static boolean isUnavailable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof UnavailableException) return true;
+        }
+        return false;
+    }
+
+    // Reconfigure timeouts/protocol. Pass null to keep the current value.
+    // The next request builds a new client; in-flight requests finish on the old one.
+    public static synchronized void configure(Duration newConnectTimeout, Duration newRequestTimeout, java.net.http.HttpClient.Version newVersion) {
+        if (newConnectTimeout != null) connectTimeout = newConnectTimeout;
+        if (newRequestTimeout != null) requestTimeout = newRequestTimeout;
+        if (newVersion != null) version = newVersion;
+        client = null;
+    }
+
+    public static synchronized java.net.http.HttpClient client() {
+        if (client == null) {
+            client = java.net.http.HttpClient.newBuilder()
+                    .version(version)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                    .build();
+        }
+        return client;
+    }
+
+    // Per-request read timeout applied by HttpClient when building requests
+    public static Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    // Timeout for a specific API path (e.g. "/teams"), falling back to requestTimeout()
+    public static Duration requestTimeout(String path) {
+        for (EndpointTimeout endpoint : endpointTimeouts) {
+            if (endpoint.pathPattern().matcher(path).find()) {
+                return endpoint.timeout();
+            }
+        }
+        return requestTimeout;
+    }
+
+    // Adds a timeout for paths matching pathRegex; it takes precedence over the defaults
+    public static void setEndpointTimeout(String pathRegex, Duration timeout) {
+        endpointTimeouts.add(0, new EndpointTimeout(Pattern.compile(pathRegex), timeout, 0));
+    }
+
+    private static EndpointTimeout builtInTimeout(String pathRegex, String name, double share) {
+        Long millis = Long.getLong("teamflow.http." + name + "TimeoutMs");
+        return new EndpointTimeout(Pattern.compile(pathRegex), millis != null ? Duration.ofMillis(millis) : null, share);
+    }
+
+    public static CircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public static <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        boolean retryable = isIdempotent(request);
+        int maxAttempts = retryable ? Math.max(1, MAX_ATTEMPTS) : 1;
+
+        for (int attempt = 1; ; attempt++) {
+            if (!circuitBreaker.tryAcquire()) {
+                throw new UnavailableException(String.format("Backend unavailable (circuit open), not calling %s %s; retry in %ds",
+                        request.method(), request.uri().getPath(), Math.max(1, circuitBreaker.remainingOpenTime().toSeconds())), null);
+            }
+
+            boolean lastAttempt = attempt >= maxAttempts;
+            HttpResponse<T> response;
+            try {
+                response = client().send(request, lastAttempt ? bodyHandler : discardIfRetryable(bodyHandler));
+            } catch (IOException e) {
+                circuitBreaker.recordFailure(); // Connect failures, resets and timeouts
+                if (lastAttempt) throw new UnavailableException(e.getMessage() != null ? e.getMessage() : e.toString(), e);
+                sleepBeforeRetry(attempt, null);
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                circuitBreaker.recordAbandoned(); // Says nothing about backend health
+                throw e;
+            }
+
+            int status = response.statusCode();
+            if (status >= 500) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess(); // 4xx means the backend is up; the request was just wrong
+            }
+            if (lastAttempt || !RETRYABLE_STATUSES.contains(status)) {
+                return response;
+            }
+            sleepBeforeRetry(attempt, response.headers().firstValue("Retry-After").orElse(null));
+        }
+    }
+
+    // GET/PUT/DELETE are safe to repeat; a POST only when the server can dedupe it by Idempotency-Key
+    private static boolean isIdempotent(HttpRequest request) {
+        return IDEMPOTENT_METHODS.contains(request.method())
+                || request.headers().firstValue("Idempotency-Key").isPresent();
+    }
+
+    // Don't bother reading the body of a response we're going to retry anyway
+    @SuppressWarnings("unchecked")
+    private static <T> HttpResponse.BodyHandler<T> discardIfRetryable(HttpResponse.BodyHandler<T> bodyHandler) {
+        return responseInfo -> RETRYABLE_STATUSES.contains(responseInfo.statusCode())
+                ? (HttpResponse.BodySubscriber<T>) HttpResponse.BodySubscribers.replacing(null)
+                : bodyHandler.apply(responseInfo);
+    }
+
+    private static void sleepBeforeRetry(int attempt, String retryAfter) throws InterruptedException {
+        long capped = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(capped + 1);
+        if (retryAfter != null) {
+            try {
+                delay = Math.min(MAX_BACKOFF_MS, Math.max(delay, Long.parseLong(retryAfter.trim()) * 1000));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form; keep the jittered delay
+            }
+        }
+        Thread.sleep(delay);
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import dto.MessageDto;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fans incoming chat messages out from the STOMP transport thread to independent stages
+ * (console, local store, metrics), each with its own bounded buffer and its own thread.
+ *
+ * Lossy stages (the console) never hold up the transport: when their buffer is full the
+ * message is skipped for them, per the overflow policy (-Dteamflow.chat.overflow):
+ *   coalesce  skipped messages are summarized in one line once the stage catches up (default)
+ *   drop      skipped messages are dropped silently
+ * Lossless stages (store, metrics) do cheap work and push back instead: a full buffer makes
+ * the transport thread wait for room, up to teamflow.chat.inboundWaitMs, which in turn slows
+ * reading from the socket. Only past that wait is a message skipped and reported.
+ */
+public class InboundPipeline implements AutoCloseable {
+
+    public enum Overflow { COALESCE, DROP }
+
+    // How the transport thread classified a message
+    public enum Disposition {
+        ACTIVE,  // The chat being viewed
+        WATCHED, // Another subscribed chat
+        HELD     // The chat being viewed, held back while its history loads (see WebSocketClient.goLive)
+    }
+
+    public record Inbound(String topic, MessageDto message, Disposition disposition, long receivedAt) {}
+
+    private static final long LOSSLESS_WAIT_MILLIS = Long.getLong("teamflow.chat.inboundWaitMs", 1_000);
+
+    private final ExecutorService executor;
+    private final SubmissionPublisher<Inbound> lossyStages;
+    private final SubmissionPublisher<Inbound> losslessStages;
+    private final Overflow overflow;
+
+    public InboundPipeline(int bufferCapacity, Overflow overflow) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("teamflow-inbound-", 0).factory());
+        this.lossyStages = new SubmissionPublisher<>(executor, Math.max(1, bufferCapacity));
+        this.losslessStages = new SubmissionPublisher<>(executor, Math.max(1, bufferCapacity));
+        this.overflow = overflow;
+    }
+
+    // Adds a stage; lossy stages follow the overflow policy, the others apply backpressure
+    public void subscribe(String name, Consumer<Inbound> consumer, boolean lossy) {
+        (lossy ? lossyStages : losslessStages).subscribe(new Stage(name, consumer, lossy));
+    }
+
+    // Called on the transport thread. Never waits on a lossy stage (i.e. on the terminal).
+    public void publish(Inbound item) {
+        losslessStages.offer(item, LOSSLESS_WAIT_MILLIS, TimeUnit.MILLISECONDS, (subscriber, dropped) -> ((Stage) subscriber).overflowed());
+        lossyStages.offer(item, 0, TimeUnit.MILLISECONDS, (subscriber, dropped) -> ((Stage) subscriber).overflowed());
+    }
+
+    @Override
+    public void close() {
+        lossyStages.close();
+        losslessStages.close();
+        executor.shutdown();
+    }
+
+    private final class Stage implements Flow.Subscriber<Inbound> {
+
+        private final String name;
+        private final Consumer<Inbound> consumer;
+        private final boolean lossy;
+        private final AtomicLong skipped = new AtomicLong();
+
+        Stage(String name, Consumer<Inbound> consumer, boolean lossy) {
+            this.name = name;
+            this.consumer = consumer;
+            this.lossy = lossy;
+        }
+
+        // Buffer full; the message is skipped for this stage only (false: don't retry the offer)
+        boolean overflowed() {
+            skipped.incrementAndGet();
+            return false;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE); // The buffer, not demand, bounds what's outstanding
+        }
+
+        @Override
+        public void onNext(Inbound item) {
+            long missed = skipped.getAndSet(0);
+            if (missed > 0) {
+                if (!lossy) {
+                    System.err.println("Inbound " + name + " stage fell behind and missed " + missed + " message(s).");
+                } else if (overflow == Overflow.COALESCE) {
+                    System.out.print("\n(" + missed + " more message(s) arrived while the terminal was busy; re-entering the chat shows them)");
+                }
+            }
+            try {
+                consumer.accept(item);
+            } catch (RuntimeException e) {
+                System.err.println("Inbound " + name + " stage failed: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.err.println("Inbound " + name + " stage stopped: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dto.*; // Import all DTOs
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Central Jackson configuration shared by every REST and STOMP path.
+ * Holds the single ObjectMapper plus pre-built ObjectReader/ObjectWriter instances per
+ * DTO and list type, so callers don't construct mappers or allocate TypeReferences per
+ * call, and root (de)serializers are resolved once at startup instead of on first use.
+ *
+ * If jackson-module-blackbird is on the classpath it is registered automatically
+ * (disable with -Dteamflow.json.blackbird=false) to replace reflective bean access
+ * with generated accessors.
+ */
+public final class JsonCodecs {
+
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+    // DTOs read or written on hot paths; their readers are built eagerly
+    private static final List<Class<?>> DTO_TYPES = List.of(
+            TeamDto.class, SprintDto.class, EpicDto.class, UserStoryDto.class, TaskDto.class,
+            MessageDto.class, UserDto.class, LoginResponseDto.class);
+
+    // Remove the JavaTimeModule registration to avoid classpath issues (MessageDto.createdAt stays a String)
+    private static final ObjectMapper MAPPER = createMapper();
+
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> listReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private static final ObjectWriter GENERIC_WRITER = MAPPER.writer();
+
+    static {
+        // Warm up: resolve the root deserializers now rather than on the first request
+        for (Class<?> type : DTO_TYPES) {
+            reader(type);
+            listReader(type);
+        }
+    }
+
+    private JsonCodecs() {}
+
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    // Reader for a single value of the given type
+    public static ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    // Reader for a JSON array of the given element type, producing a List
+    public static ObjectReader listReader(Class<?> elementType) {
+        return listReaders.computeIfAbsent(elementType, t -> MAPPER.readerFor(listType(t)));
+    }
+
+    public static JavaType listType(Class<?> elementType) {
+        return MAPPER.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    // Writer bound to a specific value type (used for typed request bodies)
+    public static ObjectWriter writer(Class<?> type) {
+        return writers.computeIfAbsent(type, MAPPER::writerFor);
+    }
+
+    // Writer for ad-hoc values such as Maps
+    public static ObjectWriter writer() {
+        return GENERIC_WRITER;
+    }
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false) // Be lenient with unknown fields
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        if (Boolean.parseBoolean(System.getProperty("teamflow.json.blackbird", "true"))) {
+            try {
+                Module blackbird = (Module) Class.forName(BLACKBIRD_MODULE).getDeclaredConstructor().newInstance();
+                mapper.registerModule(blackbird);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Module not on the classpath: stay with reflective access
+            }
+        }
+        return mapper;
+    }
+}
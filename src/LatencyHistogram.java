@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two is split into 16
+ * equal sub-buckets, so any recorded value is reported within about 6% of its true value
+ * while the whole range (1 µs to hours) fits in under a thousand counters.
+ * Safe to record from any thread; percentiles read a consistent-enough snapshot.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1));
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    // Latency in microseconds at or below which the given fraction (e.g. 0.99) of samples fall; 0 if empty
+    public long percentileMicros(double fraction) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // e.g. "send->echo n=120 p50=3.1ms p99=12.4ms p999=40.0ms max=41.2ms"
+    public String summary() {
+        if (count() == 0) return name + " n=0";
+        return String.format("%s n=%d p50=%s p99=%s p999=%s max=%s", name, count(),
+                millis(percentileMicros(0.50)), millis(percentileMicros(0.99)),
+                millis(percentileMicros(0.999)), millis(max.get()));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.1fms", micros / 1000.0);
+    }
+
+    // Values below 16 get a bucket each; above that, bucket = 16 * (exponent - 3) + next 4 bits
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = msb - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (msb - SUB_BUCKET_BITS + 1) + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,171 @@
+import dto.MessageDto;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Pages backwards through the message history of one chat context.
+ * Only the latest page is loaded on entry; older pages are fetched on demand, and the page
+ * after the one just shown is prefetched in the background so "load older" is usually instant.
+ * Entering a chat therefore costs one page regardless of how long the history is.
+ * Servers that ignore size/before and return the whole history every time are detected (a
+ * page longer than pageSize, or one repeating messages already returned) and paging stops.
+ */
+public class MessageHistory {
+
+    public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("teamflow.chat.pageSize", 50);
+    private static final Duration PREFETCH_DEADLINE = Duration.ofSeconds(15);
+
+    private final String contextType;
+    private final UUID contextId;
+    private final int pageSize;
+
+    private UUID oldestLoadedId = null; // Cursor: the next page ends just before this message
+    private boolean hasMore = true;
+    private final Set<UUID> returnedIds = new HashSet<>(); // Every message id handed out since latest()
+    private CompletableFuture<List<MessageDto>> prefetch = null;
+
+    public MessageHistory(String contextType, UUID contextId, int pageSize) {
+        this.contextType = contextType;
+        this.contextId = contextId;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    // Most recent page, oldest first. Resets the cursor.
+    public synchronized List<MessageDto> latest() throws IOException, InterruptedException {
+        cancelPrefetch();
+        oldestLoadedId = null;
+        hasMore = true;
+        returnedIds.clear();
+        return accept(HttpClient.fetchMessages(contextType, contextId, pageSize, null));
+    }
+
+    // The page before the oldest one returned so far, oldest first; empty once the start is reached
+    public synchronized List<MessageDto> older() throws IOException, InterruptedException {
+        if (!hasMore) return List.of();
+        List<MessageDto> page = null;
+        if (prefetch != null) {
+            try {
+                page = prefetch.get();
+            } catch (ExecutionException | CancellationException e) {
+                page = null; // Prefetch failed or timed out: fetch again below and report that error instead
+            }
+            prefetch = null;
+        }
+        if (page == null) {
+            page = HttpClient.fetchMessages(contextType, contextId, pageSize, oldestLoadedId);
+        }
+        return accept(page);
+    }
+
+    // Starts paging before a message that was shown from elsewhere (e.g. the local message store)
+    public synchronized void continueBefore(UUID oldestShownId) {
+        cancelPrefetch();
+        oldestLoadedId = oldestShownId;
+        hasMore = oldestShownId != null;
+        if (hasMore) {
+            returnedIds.add(oldestShownId);
+            prefetch = HttpClient.fetchMessagesAsync(contextType, contextId, pageSize, oldestLoadedId, PREFETCH_DEADLINE);
+        }
+    }
+
+    public synchronized boolean hasMore() {
+        return hasMore;
+    }
+
+    // Stops any background prefetch; call when leaving the chat
+    public synchronized void close() {
+        cancelPrefetch();
+    }
+
+    private List<MessageDto> accept(List<MessageDto> page) {
+        if (page.size() < pageSize) {
+            hasMore = false;
+        } else if (page.size() > pageSize) {
+            hasMore = false; // Server ignored size (and likely before): keep the newest pageSize
+            page = new ArrayList<>(page.subList(page.size() - pageSize, page.size()));
+        }
+        List<MessageDto> fresh = new ArrayList<>(page.size());
+        for (MessageDto message : page) {
+            if (message.getId() == null || returnedIds.add(message.getId())) fresh.add(message);
+        }
+        if (fresh.size() < page.size()) {
+            hasMore = false; // Server ignored before and sent messages again; don't repeat them
+            page = fresh;
+        }
+        if (!page.isEmpty() && page.get(0).getId() != null) {
+            oldestLoadedId = page.get(0).getId();
+        } else {
+            hasMore = false; // No usable cursor
+        }
+        if (hasMore) {
+            prefetch = HttpClient.fetchMessagesAsync(contextType, contextId, pageSize, oldestLoadedId, PREFETCH_DEADLINE);
+        }
+        return page;
+    }
+
+    // Merges a history page with live messages received while it loaded. Both are oldest first; the
+    // result is too, with messages already in the history (same id) dropped from the live side.
+    // Messages without a usable timestamp keep their position relative to their own stream.
+    public static List<MessageDto> merge(List<MessageDto> history, List<MessageDto> live) {
+        Set<UUID> seen = new HashSet<>();
+        for (MessageDto message : history) {
+            if (message.getId() != null) seen.add(message.getId());
+        }
+        List<MessageDto> fresh = new ArrayList<>(live.size());
+        for (MessageDto message : live) {
+            if (message.getId() == null || seen.add(message.getId())) fresh.add(message);
+        }
+        if (fresh.isEmpty()) return history;
+
+        List<MessageDto> merged = new ArrayList<>(history.size() + fresh.size());
+        int h = 0, l = 0;
+        while (h < history.size() && l < fresh.size()) {
+            Instant liveAt = timestamp(fresh.get(l));
+            Instant historyAt = timestamp(history.get(h));
+            if (liveAt != null && historyAt != null && liveAt.isBefore(historyAt)) {
+                merged.add(fresh.get(l++));
+            } else {
+                merged.add(history.get(h++));
+            }
+        }
+        merged.addAll(history.subList(h, history.size()));
+        merged.addAll(fresh.subList(l, fresh.size()));
+        return merged;
+    }
+
+    // createdAt is an ISO string, with or without an offset; null if absent or unparseable
+    private static Instant timestamp(MessageDto message) {
+        String createdAt = message.getCreatedAt();
+        if (createdAt == null) return null;
+        try {
+            return OffsetDateTime.parse(createdAt).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(createdAt).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
+    }
+
+    private void cancelPrefetch() {
+        if (prefetch != null) {
+            prefetch.cancel(true);
+            prefetch = null;
+        }
+    }
+}
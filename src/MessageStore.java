@@ -0,0 +1,265 @@
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import dto.MessageDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Local, append-only message log for one chat context, so re-entering a chat only downloads
+ * what's new. Two files per context in the store directory (-Dteamflow.store.dir, default
+ * ~/.teamflow/messages):
+ *   <type>-<id>.log  one JSON-encoded MessageDto per line, in arrival order
+ *   <type>-<id>.idx  one 8-byte log offset per line, so the last N messages can be located
+ *                    without scanning the log
+ * The recent window is read through memory-mapped buffers. Writes aren't fsynced per message;
+ * a torn tail left by a crash is repaired on the next open.
+ *
+ * Only the fields every source fills in are stored (id, content, createdAt, sender id and
+ * username): live messages are decoded leanly by ChatMessageConverter, and history and live
+ * lines must look the same. Lines are read back as MessageDto.
+ */
+public class MessageStore implements Closeable {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record StoredSender(UUID id, String username) {}
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record StoredMessage(UUID id, String content, StoredSender sender, String createdAt) {
+
+        static StoredMessage of(MessageDto message) {
+            StoredSender sender = message.getSender() == null ? null
+                    : new StoredSender(message.getSender().getId(), message.getSender().getUsername());
+            return new StoredMessage(message.getId(), message.getContent(), sender, message.getCreatedAt());
+        }
+    }
+
+    private static final Path STORE_DIR = Path.of(System.getProperty("teamflow.store.dir",
+            System.getProperty("user.home") + "/.teamflow/messages"));
+    private static final int SYNC_PAGE_SIZE = Integer.getInteger("teamflow.store.syncPageSize", 500);
+    private static final int RECENT_IDS = 2048; // Ids remembered for de-duplicating history vs. live frames
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES;
+
+    private static final ObjectWriter WRITER = JsonCodecs.writer(StoredMessage.class);
+    private static final ObjectReader READER = JsonCodecs.reader(MessageDto.class);
+
+    private final String contextType;
+    private final UUID contextId;
+    private final FileChannel log;
+    private final FileChannel index;
+    private long logSize;
+    private long count; // Messages in the log (= index entries)
+    private UUID lastId = null;
+
+    private final Set<UUID> recentIds = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+            return size() > RECENT_IDS;
+        }
+    });
+
+    private MessageStore(String contextType, UUID contextId) throws IOException {
+        this.contextType = contextType;
+        this.contextId = contextId;
+        Files.createDirectories(STORE_DIR);
+        String base = contextType.toLowerCase() + "-" + contextId;
+        log = FileChannel.open(STORE_DIR.resolve(base + ".log"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            index = FileChannel.open(STORE_DIR.resolve(base + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        try {
+            recover();
+            for (MessageDto message : recent(RECENT_IDS)) {
+                remember(message);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static MessageStore open(String contextType, UUID contextId) throws IOException {
+        return new MessageStore(contextType, contextId);
+    }
+
+    // Appends a message unless one with the same id is already stored; returns whether it was added
+    public synchronized boolean append(MessageDto message) throws IOException {
+        if (message.getId() != null && recentIds.contains(message.getId())) {
+            return false;
+        }
+        byte[] json = WRITER.writeValueAsBytes(StoredMessage.of(message)); // Jackson escapes newlines, so this is one line
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        long offset = logSize;
+        while (line.hasRemaining()) {
+            logSize += log.write(line, logSize);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).putLong(offset).flip();
+        long entryPosition = count * INDEX_ENTRY_BYTES;
+        while (entry.hasRemaining()) {
+            entryPosition += index.write(entry, entryPosition);
+        }
+        count++;
+        remember(message);
+        return true;
+    }
+
+    // Appends in order, skipping duplicates; returns the number added
+    public synchronized int appendAll(List<MessageDto> messages) throws IOException {
+        int added = 0;
+        for (MessageDto message : messages) {
+            if (append(message)) added++;
+        }
+        return added;
+    }
+
+    // The last n stored messages, oldest first. Only the tail of the index and log is mapped and parsed.
+    public synchronized List<MessageDto> recent(int n) throws IOException {
+        if (count == 0 || n <= 0) {
+            return new ArrayList<>();
+        }
+        long from = Math.max(0, count - n);
+        MappedByteBuffer indexTail = index.map(FileChannel.MapMode.READ_ONLY, from * INDEX_ENTRY_BYTES, INDEX_ENTRY_BYTES);
+        long start = indexTail.getLong(0);
+        if (logSize - start > Integer.MAX_VALUE) {
+            throw new IOException("Recent window too large to map: " + (logSize - start) + " bytes");
+        }
+        MappedByteBuffer window = log.map(FileChannel.MapMode.READ_ONLY, start, logSize - start);
+        List<MessageDto> messages = new ArrayList<>((int) (count - from));
+        try (MappingIterator<MessageDto> it = READER.readValues(new ByteBufferBackedInputStream(window))) {
+            while (it.hasNextValue()) {
+                messages.add(it.nextValue());
+            }
+        }
+        return messages;
+    }
+
+    // Downloads and stores every message newer than the last stored one. Does nothing for an empty
+    // store (seed it with a page of history first). Returns false if the server didn't page as asked
+    // (a page longer than requested, or one that isn't strictly newer than the cursor, i.e. size/after
+    // were ignored); that page is not stored, and the caller should load the latest history instead.
+    public boolean syncNewer() throws IOException, InterruptedException {
+        UUID after;
+        synchronized (this) {
+            after = lastId;
+        }
+        while (after != null) {
+            List<MessageDto> page = HttpClient.fetchMessagesAfter(contextType, contextId, after, SYNC_PAGE_SIZE);
+            if (page.isEmpty()) break;
+            if (page.size() > SYNC_PAGE_SIZE || !strictlyAfter(page, after)) return false;
+            if (appendAll(page) == 0) break; // No progress (e.g. all arrived live meanwhile)
+            if (page.size() < SYNC_PAGE_SIZE) break;
+            after = page.get(page.size() - 1).getId();
+        }
+        return true;
+    }
+
+    // A page fetched "after" the cursor must not contain the cursor, nor start with a stored message
+    private synchronized boolean strictlyAfter(List<MessageDto> page, UUID after) {
+        UUID first = page.get(0).getId();
+        if (first != null && recentIds.contains(first)) return false;
+        for (MessageDto message : page) {
+            if (after.equals(message.getId())) return false;
+        }
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    public synchronized UUID lastId() {
+        return lastId;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (FileChannel l = log; FileChannel i = index) {
+            if (l.isOpen()) l.force(false);
+            if (i != null && i.isOpen()) i.force(false);
+        }
+    }
+
+    private void remember(MessageDto message) {
+        if (message.getId() != null) {
+            recentIds.add(message.getId());
+            lastId = message.getId();
+        }
+    }
+
+    // Brings log and index back in line after an unclean shutdown: drops a partial index entry and
+    // entries pointing past the log, then re-indexes from the last indexed line, cutting off a torn
+    // final line.
+    private void recover() throws IOException {
+        logSize = log.size();
+        count = index.size() / INDEX_ENTRY_BYTES;
+        long start = 0;
+        while (count > 0) {
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            index.read(entry, (count - 1) * INDEX_ENTRY_BYTES);
+            long offset = entry.flip().getLong();
+            count--; // The last entry is always re-indexed below
+            if (offset < logSize) {
+                start = offset;
+                break;
+            }
+        }
+        index.truncate(count * INDEX_ENTRY_BYTES);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long lineStart = start;
+        long position = start;
+        ByteBuffer entries = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 512);
+        while (position < logSize) {
+            buffer.clear();
+            int read = log.read(buffer, position);
+            if (read <= 0) break;
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    if (!entries.hasRemaining()) flushEntries(entries);
+                    entries.putLong(lineStart);
+                    lineStart = position + i + 1;
+                }
+            }
+            position += read;
+        }
+        flushEntries(entries);
+        if (lineStart < logSize) {
+            log.truncate(lineStart); // Torn last line
+            logSize = lineStart;
+        }
+    }
+
+    private void flushEntries(ByteBuffer entries) throws IOException {
+        entries.flip();
+        long position = count * INDEX_ENTRY_BYTES;
+        count += entries.remaining() / INDEX_ENTRY_BYTES;
+        while (entries.hasRemaining()) {
+            position += index.write(entries, position);
+        }
+        entries.clear();
+    }
+}
@@ -0,0 +1,379 @@
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound chat messages, journaled to disk before they are sent so nothing typed is lost
+ * to a dropped connection or a crash. A single background sender delivers them strictly in
+ * order; while there is no session it waits and picks up where it left off once woken.
+ * Each message carries a client-generated id so the server (or a later echo) can recognize
+ * a message that was delivered twice around a reconnect.
+ *
+ * Writing a message to the socket doesn't mean the server got it: on a half-open connection
+ * writes keep succeeding until the heart-beats notice. So a written message stays unconfirmed
+ * until the owner calls confirm() (on its receipt or echo); requeueUnconfirmed() puts the
+ * unconfirmed ones back in front of the queue after a reconnect, to be sent again with the
+ * same client id.
+ *
+ * The journal is a JSON-lines file of "add" and "sent" records; "sent" is only written once a
+ * message is confirmed. Unconfirmed messages are replayed from it on open, and it is compacted
+ * then and whenever the queue drains.
+ *
+ * Bursts (a pasted block, a script) are handled as a group: the sender takes up to
+ * teamflow.outbox.batchSize messages at a time, forces the journal to disk once for all of
+ * them, sends them back to back and records them as sent with a single write. At most
+ * teamflow.outbox.capacity messages wait unsent; beyond that enqueue blocks until the
+ * sender catches up.
+ */
+public class OutboundQueue implements Closeable {
+
+    public record OutboundMessage(UUID clientId, String destination, String content, long createdAt) {}
+
+    // Delivers one message; false if it couldn't be sent right now (e.g. not connected)
+    @FunctionalInterface
+    public interface Transport {
+        boolean send(OutboundMessage message);
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record JournalEntry(String op, UUID clientId, String destination, String content, Long createdAt) {}
+
+    private static final long RETRY_MILLIS = Long.getLong("teamflow.outbox.retryMs", 2_000);
+    private static final int COMPACT_AFTER_LINES = 1_000;
+    private static final int BATCH_SIZE = Math.max(1, Integer.getInteger("teamflow.outbox.batchSize", 64));
+    private static final int CAPACITY = Math.max(1, Integer.getInteger("teamflow.outbox.capacity", 1_000));
+    private static final ObjectWriter WRITER = JsonCodecs.writer(JournalEntry.class);
+    private static final ObjectReader READER = JsonCodecs.reader(JournalEntry.class);
+
+    private final Path journalFile;
+    private final Transport transport;
+    private final FileChannel journal;
+    private int journalLines = 0;
+    private boolean journalDirty = false; // Records written but not yet forced to disk (guarded by journal)
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<OutboundMessage> pending = new ArrayDeque<>(); // Not written yet
+    private final Map<UUID, OutboundMessage> unconfirmed = new LinkedHashMap<>(); // Written, in send order
+    private final Set<UUID> confirmedEarly = new HashSet<>(); // Confirmed while still in pending
+    private boolean woken = false;
+    private long requeues = 0; // Bumped by requeueUnconfirmed
+    private boolean closed = false;
+    private final Thread sender;
+
+    private OutboundQueue(Path journalFile, Transport transport) throws IOException {
+        this.journalFile = journalFile;
+        this.transport = transport;
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        pending.addAll(replay(journalFile));
+        rewrite(pending); // Compact: only unsent messages survive
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalLines = pending.size();
+        sender = Thread.ofVirtual().name("teamflow-outbox").start(this::run);
+    }
+
+    public static OutboundQueue open(Path journalFile, Transport transport) throws IOException {
+        return new OutboundQueue(journalFile, transport);
+    }
+
+    // Journals the message and hands it to the sender. Never waits on the network, only on a full
+    // queue; the journal is forced to disk by the sender before the message goes out.
+    public OutboundMessage enqueue(String destination, String content) throws IOException, InterruptedException {
+        OutboundMessage message = new OutboundMessage(UUID.randomUUID(), destination, content, System.currentTimeMillis());
+        lock.lock(); // Held while journaling so compaction can't drop a message that isn't queued yet
+        try {
+            while (!closed && pending.size() >= CAPACITY) {
+                notFull.await(); // Backpressure: the sender is behind (or the server is away)
+            }
+            if (closed) throw new IOException("Outbound queue is closed");
+            appendJournal(new JournalEntry("add", message.clientId(), destination, content, message.createdAt()));
+            pending.addLast(message);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return message;
+    }
+
+    // Tells the sender to retry now, e.g. right after a session (re)connects
+    public void wakeUp() {
+        lock.lock();
+        try {
+            woken = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Messages not confirmed yet, whether written already or not
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size() + unconfirmed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Records that the server has the message (its receipt or echo arrived). Safe to call more
+    // than once, and for ids this queue doesn't know.
+    public void confirm(UUID clientId) {
+        OutboundMessage message;
+        lock.lock();
+        try {
+            if (closed) return;
+            message = unconfirmed.remove(clientId);
+            if (message == null) {
+                // Written but not moved out of pending yet, or re-queued after a reconnect
+                for (OutboundMessage queued : pending) {
+                    if (queued.clientId().equals(clientId)) {
+                        confirmedEarly.add(clientId);
+                        break;
+                    }
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        markSent(List.of(message));
+    }
+
+    // Puts every written but unconfirmed message back in front of the queue, in send order. Call
+    // after a reconnect, before the new session is used, so they go out again first.
+    public void requeueUnconfirmed() {
+        lock.lock();
+        try {
+            if (unconfirmed.isEmpty()) return;
+            List<OutboundMessage> resend = new ArrayList<>(unconfirmed.values());
+            unconfirmed.clear();
+            requeues++;
+            for (int i = resend.size() - 1; i >= 0; i--) {
+                pending.addFirst(resend.get(i));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stops the sender; unconfirmed messages stay in the journal for the next open
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        forceJournal();
+        synchronized (journal) {
+            journal.close();
+        }
+    }
+
+    private void run() {
+        List<OutboundMessage> batch = new ArrayList<>(BATCH_SIZE);
+        List<OutboundMessage> alreadyConfirmed = new ArrayList<>();
+        while (true) {
+            batch.clear();
+            alreadyConfirmed.clear();
+            long requeuesAtStart;
+            lock.lock();
+            try {
+                while (!closed && pending.isEmpty()) {
+                    changed.awaitUninterruptibly();
+                }
+                if (closed) return;
+                // Stay queued until written, preserving order; re-queued ones confirmed meanwhile are dropped
+                for (Iterator<OutboundMessage> it = pending.iterator(); it.hasNext() && batch.size() < BATCH_SIZE; ) {
+                    OutboundMessage message = it.next();
+                    if (confirmedEarly.remove(message.clientId())) {
+                        it.remove();
+                        alreadyConfirmed.add(message);
+                    } else {
+                        batch.add(message);
+                    }
+                }
+                if (!alreadyConfirmed.isEmpty()) {
+                    notFull.signalAll();
+                }
+                woken = false;
+                requeuesAtStart = requeues;
+            } finally {
+                lock.unlock();
+            }
+            if (!alreadyConfirmed.isEmpty()) {
+                markSent(alreadyConfirmed);
+            }
+            if (batch.isEmpty()) continue;
+
+            forceJournal(); // One fsync covers every "add" in the batch
+            int delivered = 0;
+            try {
+                while (delivered < batch.size() && transport.send(batch.get(delivered))) {
+                    delivered++;
+                }
+            } catch (RuntimeException e) {
+                // Counts as not delivered; retried below
+            }
+
+            List<OutboundMessage> confirmedInFlight = new ArrayList<>();
+            lock.lock();
+            try {
+                // After a reconnect meanwhile, what this batch wrote may have gone to the lost session:
+                // leave it queued behind the re-queued messages and send it again
+                for (int i = 0; i < delivered && requeues == requeuesAtStart; i++) {
+                    OutboundMessage message = batch.get(i);
+                    pending.remove(message);
+                    if (confirmedEarly.remove(message.clientId())) {
+                        confirmedInFlight.add(message); // Its echo beat us here
+                    } else {
+                        unconfirmed.put(message.clientId(), message);
+                    }
+                }
+                if (delivered > 0) {
+                    notFull.signalAll();
+                }
+                if (delivered < batch.size()) {
+                    // Wait for a reconnect (wakeUp) or the retry interval, whichever comes first
+                    while (!closed && !woken) {
+                        if (!changed.await(RETRY_MILLIS, TimeUnit.MILLISECONDS)) break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (!confirmedInFlight.isEmpty()) {
+                markSent(confirmedInFlight);
+            }
+        }
+    }
+
+    // Journals confirmed messages as "sent" so they aren't replayed
+    private void markSent(List<OutboundMessage> messages) {
+        try {
+            StringBuilder lines = new StringBuilder(messages.size() * 64);
+            for (OutboundMessage message : messages) {
+                lines.append(WRITER.writeValueAsString(new JournalEntry("sent", message.clientId(), null, null, null))).append('\n');
+            }
+            writeJournal(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)), messages.size());
+            lock.lock();
+            try {
+                if (pending.isEmpty() && unconfirmed.isEmpty() && journalLines >= COMPACT_AFTER_LINES) {
+                    synchronized (journal) {
+                        journal.truncate(0); // Everything in it has been confirmed
+                        journalLines = 0;
+                        journalDirty = false;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            // Worst case the messages are replayed once more on the next start; their client ids let them be deduplicated
+            System.err.println("Failed to journal sent messages: " + e.getMessage());
+        }
+    }
+
+    private void forceJournal() {
+        synchronized (journal) {
+            if (!journalDirty) return;
+            try {
+                journal.force(false);
+                journalDirty = false;
+            } catch (IOException e) {
+                // Still written to the OS; only a power loss before the next force could lose it
+                System.err.println("Failed to flush outbound journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void appendJournal(JournalEntry entry) throws IOException {
+        byte[] json = WRITER.writeValueAsBytes(entry);
+        writeJournal(ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip(), 1);
+    }
+
+    // Written, not forced; forceJournal() makes it durable
+    private void writeJournal(ByteBuffer lines, int count) throws IOException {
+        synchronized (journal) {
+            while (lines.hasRemaining()) {
+                journal.write(lines);
+            }
+            journalDirty = true;
+            journalLines += count;
+        }
+    }
+
+    // Unconfirmed messages in the journal, in their original order. A torn last line is ignored.
+    private static List<OutboundMessage> replay(Path journalFile) throws IOException {
+        Map<UUID, OutboundMessage> unsent = new LinkedHashMap<>();
+        if (!Files.exists(journalFile)) return new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JournalEntry entry;
+                try {
+                    entry = READER.readValue(line);
+                } catch (IOException e) {
+                    continue; // Partially written line from a crash
+                }
+                if ("add".equals(entry.op()) && entry.clientId() != null) {
+                    unsent.put(entry.clientId(), new OutboundMessage(entry.clientId(), entry.destination(), entry.content(),
+                            entry.createdAt() != null ? entry.createdAt() : 0L));
+                } else if ("sent".equals(entry.op())) {
+                    unsent.remove(entry.clientId());
+                }
+            }
+        }
+        return new ArrayList<>(unsent.values());
+    }
+
+    private void rewrite(Iterable<OutboundMessage> messages) throws IOException {
+        Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (OutboundMessage m : messages) {
+                byte[] json = WRITER.writeValueAsBytes(new JournalEntry("add", m.clientId(), m.destination(), m.content(), m.createdAt()));
+                ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+                while (line.hasRemaining()) out.write(line);
+            }
+            out.force(false);
+        }
+        Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
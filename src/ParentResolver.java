@@ -0,0 +1,112 @@
+import dto.EpicDto;
+import dto.TeamDto;
+import dto.UserStoryDto;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resolves the team -> first epic -> first user story chain that user story and
+ * task lookups hang off. Each link is resolved at most once per team (memoized in
+ * the shared {@link EntityCache}). The first epic always comes from the team's /epics
+ * list; nested data that is already cached, such as {@code EpicDto.userStories} (also
+ * inside {@code TeamDto.epics}), only saves the user story request.
+ */
+public class ParentResolver {
+
+    // First epic of a team, plus its first user story when the epic payload nested them
+    private record FirstEpic(UUID id, UUID nestedFirstStoryId, boolean storiesKnown) {}
+
+    private static final FirstEpic NO_EPIC = new FirstEpic(null, null, true);
+
+    private final EntityCache cache;
+
+    public ParentResolver(EntityCache cache) {
+        this.cache = cache;
+    }
+
+    public UUID firstEpicId(UUID teamId) throws IOException, InterruptedException {
+        return firstEpicId(teamId, false);
+    }
+
+    // quiet: don't report fetch failures on stderr (background prefetch); they are still thrown
+    public UUID firstEpicId(UUID teamId, boolean quiet) throws IOException, InterruptedException {
+        return firstEpic(teamId, quiet).id();
+    }
+
+    public UUID firstUserStoryId(UUID teamId) throws IOException, InterruptedException {
+        return firstUserStoryId(teamId, false);
+    }
+
+    public UUID firstUserStoryId(UUID teamId, boolean quiet) throws IOException, InterruptedException {
+        return cache.get("chain:story:" + teamId, () -> {
+            FirstEpic epic = firstEpic(teamId, quiet);
+            if (epic.id() == null) return null;
+            if (epic.storiesKnown()) return epic.nestedFirstStoryId(); // No request needed
+
+            String path = "/user-stories?epicId=" + epic.id();
+            try {
+                List<UserStoryDto> userStories = HttpClient.sendGetRequest(path, JsonCodecs.listReader(UserStoryDto.class));
+                cache.put("list:userstory:" + teamId, userStories); // Same list the user story menu shows
+                return userStories != null && !userStories.isEmpty() ? userStories.get(0).getId() : null;
+            } catch (IOException | InterruptedException e) {
+                if (!quiet) System.err.println("Failed to fetch user stories for epic " + epic.id() + ": " + e.getMessage());
+                throw e;
+            }
+        });
+    }
+
+    // The first epic is always the first of the team's /epics list, as the epic menu shows it.
+    // Nested team data is only used to learn that epic's user stories without another request.
+    private FirstEpic firstEpic(UUID teamId, boolean quiet) throws IOException, InterruptedException {
+        return cache.get("chain:epic:" + teamId, () -> {
+            List<?> epics = epicList(teamId, quiet);
+            if (epics == null || epics.isEmpty()) return NO_EPIC;
+            FirstEpic first = fromEpic((EpicDto) epics.get(0));
+            return first.storiesKnown() ? first : fromNestedTeamEpic(teamId, first);
+        });
+    }
+
+    // The team's epic list: reused if the epic menu already loaded it, otherwise fetched and kept for it
+    private List<?> epicList(UUID teamId, boolean quiet) throws IOException, InterruptedException {
+        if (cache.getIfPresent("list:epic:" + teamId) instanceof List<?> epicList) {
+            return epicList;
+        }
+        String path = "/epics?teamId=" + teamId;
+        try {
+            List<EpicDto> fetched = HttpClient.sendGetRequest(path, JsonCodecs.listReader(EpicDto.class));
+            cache.put("list:epic:" + teamId, fetched);
+            return fetched;
+        } catch (IOException | InterruptedException e) {
+            if (!quiet) System.err.println("Failed to fetch epics for team " + teamId + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    // Same epic as nested in the cached team list, if that carries its user stories
+    private FirstEpic fromNestedTeamEpic(UUID teamId, FirstEpic epic) {
+        if (cache.getIfPresent("teams") instanceof List<?> teamList) {
+            for (Object item : teamList) {
+                if (item instanceof TeamDto team && teamId.equals(team.getId()) && team.getEpics() != null) {
+                    for (EpicDto nested : team.getEpics()) {
+                        if (epic.id() != null && epic.id().equals(nested.getId())) {
+                            FirstEpic known = fromEpic(nested);
+                            return known.storiesKnown() ? known : epic;
+                        }
+                    }
+                }
+            }
+        }
+        return epic;
+    }
+
+    // An empty or missing userStories list may just mean the server didn't nest them, so only trust non-empty ones
+    private static FirstEpic fromEpic(EpicDto epic) {
+        List<UserStoryDto> stories = epic.getUserStories();
+        if (stories != null && !stories.isEmpty()) {
+            return new FirstEpic(epic.getId(), stories.get(0).getId(), true);
+        }
+        return new FirstEpic(epic.getId(), null, false);
+    }
+}
@@ -7,7 +7,7 @@ import java.io.IOException;
 // import java.time.format.DateTimeFormatter;
 // import java.time.format.FormatStyle;
 import java.util.*; // Import Map, HashMap, etc.
-import com.fasterxml.jackson.databind.ObjectMapper; // Needed for sprint JSON creation
+import java.util.concurrent.CompletableFuture;
 
 public class TeamFlowClient {
 
@@ -16,6 +16,10 @@ public class TeamFlowClient {
     private static String currentContextType = null; // e.g., "sprint", "epic"
     private static UUID currentContextId = null; // ID of the selected sprint/epic etc.
 
+    // Background fetches of the context lists for the selected team (see prefetchContextLists)
+    private static final List<CompletableFuture<?>> contextPrefetches = new ArrayList<>();
+    private static final java.time.Duration PREFETCH_DEADLINE = java.time.Duration.ofSeconds(10);
+
     // Remove unused formatter
     // private static final DateTimeFormatter MESSAGE_TIME_FORMATTER = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
 
@@ -77,7 +81,7 @@ public class TeamFlowClient {
                     } catch (IOException | InterruptedException e) {
                         System.err.println("Error selecting context: " + e.getMessage());
                         // Decide how to handle - go back to team select?
-                        currentTeamId = null; // Go back to team selection
+                        leaveTeam(); // Go back to team selection
                         break;
                     }
                     // Context selected, proceed to chat.
@@ -125,6 +129,8 @@ public class TeamFlowClient {
                     }
                     HttpClient.setAuthToken(authToken);
                     System.out.println(capitalize(choice) + " successful!");
+                    WebSocketClient.openOutbox(username);
+                    WebSocketClient.connect(authToken); // One session for all chats of this login
                     return true;
                 } catch (IOException | InterruptedException e) {
                     System.err.println("Authentication failed: " + e.getMessage());
@@ -219,6 +225,7 @@ public class TeamFlowClient {
                     if (teams != null && teamIndex >= 0 && teamIndex < teams.size()) {
                         currentTeamId = teams.get(teamIndex).getId();
                         System.out.println("Team selected: " + teams.get(teamIndex).getName());
+                        prefetchContextLists(currentTeamId);
                         return true;
                     } else {
                         System.out.println("Invalid team number.");
@@ -230,6 +237,28 @@ public class TeamFlowClient {
         }
     }
 
+    // Fans out the four context list fetches as soon as a team is chosen. Results land in
+    // HttpClient's entity cache, so the context picker usually opens without a round trip.
+    // Failures are ignored here; the picker fetches (and reports errors) itself if needed.
+    private static void prefetchContextLists(UUID teamId) {
+        cancelPrefetches();
+        for (String contextType : Arrays.asList("sprint", "epic", "userstory", "task")) {
+            // Keep the original future: cancelling a dependent stage wouldn't interrupt the request
+            contextPrefetches.add(HttpClient.fetchContextEntitiesAsync(contextType, teamId, PREFETCH_DEADLINE));
+        }
+    }
+
+    private static void cancelPrefetches() {
+        contextPrefetches.forEach(prefetch -> prefetch.cancel(true));
+        contextPrefetches.clear();
+    }
+
+    // Clears the team selection and stops any work still running for it
+    private static void leaveTeam() {
+        cancelPrefetches();
+        currentTeamId = null;
+    }
+
     // Removed unescapeQuotes method
 
     // Updated to use NamedEntity
@@ -251,10 +280,7 @@ public class TeamFlowClient {
 
     private static void createTeam(String teamName) {
         try {
-            // Manually create JSON payload as performTeamCrud expects a string
-            // Jackson ObjectMapper could be used here too for consistency, but keeping it simple
-            String jsonPayload = "{\"name\": \"" + teamName.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
-            TeamDto createdTeam = HttpClient.performTeamCrud("POST", null, jsonPayload);
+            TeamDto createdTeam = HttpClient.performTeamCrud("POST", null, TeamRequest.create(teamName));
             if (createdTeam != null) {
                 System.out.println("Team created: " + createdTeam.getName());
             } else {
@@ -270,9 +296,7 @@ public class TeamFlowClient {
         UUID teamId = getEntityIdFromIndex(teams, indexStr);
         if (teamId == null) return;
         try {
-            // Manually create JSON payload as performTeamCrud expects a string
-            String jsonPayload = "{\"name\": \"" + newName.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
-            TeamDto updatedTeam = HttpClient.performTeamCrud("PUT", teamId, jsonPayload);
+            TeamDto updatedTeam = HttpClient.performTeamCrud("PUT", teamId, TeamRequest.update(newName));
             if (updatedTeam != null) {
                 System.out.println("Team updated to: " + updatedTeam.getName());
             } else {
@@ -306,15 +330,19 @@ public class TeamFlowClient {
 
     private static boolean selectContext(Scanner scanner) throws IOException, InterruptedException {
         while (true) {
-            System.out.println("\nChoose a context type (sprint/epic/userstory/task) or /back, /exit:");
-            String contextTypeInput = scanner.nextLine().trim().toLowerCase();
+            System.out.println("\nChoose a context type (sprint/epic/userstory/task) or /import <file>, /back, /exit:");
+            String rawInput = scanner.nextLine().trim();
+            String contextTypeInput = rawInput.toLowerCase();
 
-            if ("/exit".equals(contextTypeInput)) {
+            if (contextTypeInput.startsWith("/import")) {
+                importBacklog(rawInput.substring("/import".length()).trim()); // Keep the file name's case
+            } else if ("/exit".equals(contextTypeInput)) {
                 System.out.println("Exiting application.");
                 System.exit(0);
                 return false;
             } else if ("/back".equals(contextTypeInput)) {
-                currentTeamId = null; // Signal to go back to team selection
+                HttpClient.cancelInFlight(); // Abort any background requests for the team we're leaving
+                leaveTeam(); // Signal to go back to team selection
                 return false; // Return false to break context loop and go back
             } else if (Arrays.asList("sprint", "epic", "userstory", "task").contains(contextTypeInput)) {
                 currentContextType = contextTypeInput;
@@ -360,7 +388,7 @@ public class TeamFlowClient {
                 }
             }
 
-            System.out.println("Select a " + contextType + " number or command (/create..., /edit..., /delete..., /back, /exit):");
+            System.out.println("Select a " + contextType + " number or command (/create..., /edit..., /status..., /delete..., /bulk delete..., /back, /exit):");
             String input = scanner.nextLine().trim();
 
             if (input.startsWith("/")) {
@@ -374,7 +402,12 @@ public class TeamFlowClient {
                     System.exit(0);
                     return false;
                 } else if ("/back".equals(commandAction)) {
+                    HttpClient.cancelInFlight();
                     return false; // Go back to context type selection
+                } else if ("/bulk".equals(commandAction)) {
+                    // Form is "/bulk <action> <type> <ranges>", so the type isn't in the usual position
+                    bulkCommand(scanner, contextType, entities, commandType, commandArgs);
+                    continue; // Re-list entities after bulk attempt
                 } else if (!commandType.equals(contextType) && !commandAction.equals("/back") && !commandAction.equals("/exit")) {
                     System.out.println("Invalid command type. Expected '/<action> " + contextType + " ...'");
                     continue;
@@ -388,16 +421,25 @@ public class TeamFlowClient {
                     if (editMatcher.matches()) {
                         String indexStr = editMatcher.group(1);
                         String newName = editMatcher.group(2) != null ? editMatcher.group(2) : editMatcher.group(3);
-                        // TODO: Add description editing support if needed, parsing group 5
+                        String newDescription = editMatcher.group(4) != null ? editMatcher.group(5) : null; // Only changed when :: is given
                         if (indexStr != null && newName != null && !newName.isEmpty()) {
-                            editEntity(scanner, contextType, entities, indexStr, newName);
+                            editEntity(scanner, contextType, entities, indexStr, newName, newDescription, null);
                         } else {
-                             System.out.println("Usage: /edit " + contextType + " <index> <new_name> or /edit " + contextType + " <index> \"<new name with spaces>\"");
+                             printEditUsage(contextType);
                         }
                     } else {
-                        System.out.println("Usage: /edit " + contextType + " <index> <new_name> or /edit " + contextType + " <index> \"<new name with spaces>\"");
+                        printEditUsage(contextType);
                     }
                     continue; // Re-list entities after edit attempt
+                } else if ("/status".equals(commandAction)) {
+                    String[] statusArgs = commandArgs.trim().split("\\s+", 2);
+                    if (("userstory".equals(contextType) || "task".equals(contextType))
+                            && statusArgs.length == 2 && statusArgs[0].matches("\\d+")) {
+                        editEntity(scanner, contextType, entities, statusArgs[0], null, null, statusArgs[1].trim());
+                    } else {
+                        System.out.println("Usage: /status <userstory|task> <index> <status>");
+                    }
+                    continue; // Re-list entities after status change
                 } else if ("/delete".equals(commandAction)) {
                     String deleteIndex = commandArgs.trim();
                     if (deleteIndex.matches("\\d+")) {
@@ -548,33 +590,10 @@ public class TeamFlowClient {
          String startDate = startDateStr + "T00:00:00"; // Example format
          String endDate = endDateStr + "T23:59:59";   // Example format
 
-         String path = "/sprints/start"; // Endpoint for creating/starting a sprint
-         // Manually create JSON payload as performEntityCrud expects a string
-         // Use a Map for easier construction and potential Jackson serialization later
-         Map<String, String> payloadMap = new HashMap<>();
-         payloadMap.put("teamId", currentTeamId.toString());
-         payloadMap.put("name", sprintName);
-         payloadMap.put("startDate", startDate);
-         payloadMap.put("endDate", endDate);
-
-         String jsonPayload;
          try {
-             // Use Jackson to create the JSON string correctly
-             jsonPayload = new ObjectMapper().writeValueAsString(payloadMap);
-         } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
-              System.err.println("Error creating JSON payload for sprint: " + e.getMessage());
-              return;
-         }
-
-
-         try {
-             // performEntityCrud returns Object, needs casting
-             Object result = HttpClient.performEntityCrud("POST", "sprint", null, path, jsonPayload);
-             if (result instanceof SprintDto) {
-                 SprintDto createdSprint = (SprintDto) result;
+             SprintDto createdSprint = HttpClient.createSprint(SprintRequest.create(currentTeamId, sprintName, startDate, endDate));
+             if (createdSprint != null) {
                  System.out.println("Sprint created: " + createdSprint.getName());
-             } else if (result != null) {
-                  System.err.println("Sprint creation returned unexpected type: " + result.getClass().getName());
              } else {
                   System.err.println("Failed to create sprint (API returned null).");
              }
@@ -584,31 +603,35 @@ public class TeamFlowClient {
     }
 
 
-    // Updated to use NamedEntity
-    private static void editEntity(Scanner scanner, String entityType, List<? extends NamedEntity> entities, String indexStr, String newName) {
+    private static void printEditUsage(String entityType) {
+        System.out.println("Usage: /edit " + entityType + " <index> <new_name>");
+        System.out.println("   or: /edit " + entityType + " <index> \"<new name with spaces>\"");
+        System.out.println("   or: /edit " + entityType + " <index> <new_name> :: <new description>");
+    }
+
+    // Partial update: null arguments are left out of the request and stay unchanged on the server
+    private static void editEntity(Scanner scanner, String entityType, List<? extends NamedEntity> entities, String indexStr,
+                                   String newName, String newDescription, String newStatus) {
         UUID entityId = getEntityIdFromIndex(entities, indexStr);
         if (entityId == null) return;
 
-        String path = "";
-        // Manually create JSON payload as performEntityCrud expects a string
-        // TODO: Add support for updating description, status etc. if needed
-        String jsonPayload = "{\"name\": \"" + newName.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
-
+        Object request;
         switch (entityType) {
-            case "sprint": path = "/sprints/" + entityId; break;
-            case "epic": path = "/epics/" + entityId; break;
-            case "userstory": path = "/user-stories/" + entityId; break;
-            case "task": path = "/tasks/" + entityId; break;
+            case "sprint": request = SprintRequest.update(newName, null, null); break;
+            case "epic": request = EpicRequest.update(newName, newDescription); break;
+            case "userstory": request = UserStoryRequest.update(newName, newDescription, newStatus); break;
+            case "task": request = TaskRequest.update(newName, newDescription, newStatus); break;
             default: System.out.println("Cannot edit unknown entity type: " + entityType); return;
         }
 
         try {
-            // performEntityCrud returns Object, needs casting
-            Object result = HttpClient.performEntityCrud("PUT", entityType, entityId, path, jsonPayload);
+            // updateEntity returns Object, needs casting
+            Object result = HttpClient.updateEntity(entityType, entityId, request);
             // Check the type before casting
             if (result instanceof NamedEntity) {
                  NamedEntity updatedEntity = (NamedEntity) result;
-                 System.out.println(capitalize(entityType) + " updated to: " + updatedEntity.getName());
+                 System.out.println(capitalize(entityType) + " updated: " + updatedEntity.getName()
+                         + (newStatus != null ? " (status " + newStatus + ")" : ""));
             } else if (result != null) {
                  System.err.println("Edit operation returned unexpected type: " + result.getClass().getName());
             } else {
@@ -651,51 +674,243 @@ public class TeamFlowClient {
 
 
 
+    // Handles "/import <file> [--restart]": streams a CSV/JSONL backlog into the current team.
+    // An interrupted import resumes from its checkpoint unless --restart is given.
+    private static void importBacklog(String args) {
+        boolean restart = false;
+        if (args.endsWith("--restart")) {
+            restart = true;
+            args = args.substring(0, args.length() - "--restart".length()).trim();
+        }
+        if (args.startsWith("\"") && args.endsWith("\"") && args.length() > 1) {
+            args = args.substring(1, args.length() - 1); // Quoted path with spaces
+        }
+        if (args.isEmpty()) {
+            System.out.println("Usage: /import <file.csv|file.jsonl> [--restart]");
+            System.out.println("Columns: type (epic/userstory/task), name, description, status, parent (name or id)");
+            return;
+        }
+
+        java.nio.file.Path file = java.nio.file.Paths.get(args);
+        if (!java.nio.file.Files.isRegularFile(file)) {
+            System.err.println("File not found: " + file);
+            return;
+        }
+        try {
+            BacklogImporter.Summary summary = new BacklogImporter(currentTeamId, file, BacklogImporter.DEFAULT_BATCH_SIZE).run(restart);
+            System.out.printf("Import finished: %d rows imported (%d failed, %d skipped from checkpoint), %.1f rows/s%n",
+                    summary.importedRows(), summary.failedRows(), summary.skippedRows(), summary.rowsPerSecond());
+            if (summary.rejectsFile() != null) {
+                System.out.println("Failed rows and their errors are in " + summary.rejectsFile() + "; fix them and /import that file.");
+            }
+        } catch (IOException e) {
+            System.err.println("Import failed: " + e.getMessage() + " (progress is saved; run /import again to resume)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Import interrupted (progress is saved; run /import again to resume)");
+        }
+    }
+
+    // Handles "/bulk delete <type> <ranges>", e.g. "/bulk delete task 1-5,8,10-12".
+    // Deletes run concurrently through BulkOperations; each failure is reported individually.
+    private static void bulkCommand(Scanner scanner, String entityType, List<? extends NamedEntity> entities, String bulkAction, String args) {
+        String usage = "Usage: /bulk delete " + entityType + " <index ranges, e.g. 1-5,8>";
+        String[] typeAndRanges = args.trim().split("\\s+", 2);
+        if (!"delete".equals(bulkAction) || typeAndRanges.length < 2 || !entityType.equals(typeAndRanges[0])) {
+            System.out.println(usage);
+            return;
+        }
+        List<Integer> indexes = parseIndexRanges(typeAndRanges[1], entities != null ? entities.size() : 0);
+        if (indexes == null || indexes.isEmpty()) {
+            System.out.println(usage);
+            return;
+        }
+
+        System.out.print("Are you sure you want to delete " + indexes.size() + " " + entityType + "(s)? (yes/no): ");
+        String confirmation = scanner.nextLine().trim().toLowerCase();
+        if (!"yes".equals(confirmation)) {
+            System.out.println("Deletion cancelled.");
+            return;
+        }
+
+        List<BulkOperations.Operation> operations = new ArrayList<>();
+        for (int index : indexes) {
+            operations.add(BulkOperations.Operation.delete(entityType, entities.get(index - 1).getId()));
+        }
+        try {
+            BulkOperations.Result result = BulkOperations.execute(operations);
+            for (BulkOperations.ItemResult failure : result.failures()) {
+                String name = entities.get(indexes.get(failure.index()) - 1).getName();
+                System.err.println("Failed to delete " + entityType + " '" + name + "': " + failure.error().getMessage());
+            }
+            System.out.println("Bulk delete: " + result.summary());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Bulk delete interrupted.");
+        }
+    }
+
+    // Parses "1-5,8,10-12" into sorted, distinct 1-based indexes; null if malformed or out of range
+    private static List<Integer> parseIndexRanges(String spec, int size) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String part : spec.replace(" ", "").split(",")) {
+            java.util.regex.Matcher m = java.util.regex.Pattern.compile("(\\d+)(?:-(\\d+))?").matcher(part);
+            if (!m.matches()) {
+                System.out.println("Invalid range: " + part);
+                return null;
+            }
+            int from = Integer.parseInt(m.group(1));
+            int to = m.group(2) != null ? Integer.parseInt(m.group(2)) : from;
+            if (from < 1 || to > size || from > to) {
+                System.out.println("Invalid range: " + part + " (valid indexes are 1-" + size + ")");
+                return null;
+            }
+            for (int i = from; i <= to; i++) indexes.add(i);
+        }
+        return new ArrayList<>(indexes);
+    }
+
+
     // Updated to use dto.MessageDto and handle createdAt as String
     private static void startChat(Scanner scanner) {
         System.out.println("\n--- Entering " + currentContextType + " Chat (" + currentContextId + ") ---");
-        // Note: fetchMessages currently returns empty list due to unclear API endpoint
-        List<MessageDto> receivedMessages = HttpClient.fetchMessages(currentContextType, currentContextId);
-        if (receivedMessages != null && !receivedMessages.isEmpty()) {
-            System.out.println("Recent messages:");
-            receivedMessages.forEach(msg -> {
-                // Use createdAt directly as String, provide default if null
-                String timestamp = msg.getCreatedAt() != null ? msg.getCreatedAt() : "Timestamp N/A";
-                String sender = (msg.getSender() != null && msg.getSender().getUsername() != null) ? msg.getSender().getUsername() : "Unknown";
-                System.out.printf("[%s] %s: %s\n", timestamp, sender, msg.getContent());
+        // Only the latest page is loaded up front; older pages come from /more
+        MessageHistory history = new MessageHistory(currentContextType, currentContextId, MessageHistory.DEFAULT_PAGE_SIZE);
+        MessageStore store = openMessageStore();
+        if (store != null) {
+            WebSocketClient.setMessageListener(message -> {
+                try {
+                    store.append(message);
+                } catch (IOException e) {
+                    System.err.println("Failed to store message locally: " + e.getMessage());
+                }
             });
-        } else {
-            // System.out.println("No recent messages or failed to fetch.");
         }
+        // Subscribe first so nothing sent while the history loads is missed; live messages are held
+        // until the history is in and then merged with it
+        WebSocketClient.joinChat(currentContextType, currentContextId, true);
 
-        WebSocketClient.connectWebSocket(currentContextType, currentContextId, authToken);
+        List<MessageDto> recent = List.of();
+        try {
+            if (store != null && !store.isEmpty() && store.syncNewer()) {
+                // Seen this chat before: download only what's new, then show the tail of the local log.
+                // If the server can't page after the last stored message, fall through to the latest page.
+                recent = store.recent(MessageHistory.DEFAULT_PAGE_SIZE);
+                history.continueBefore(recent.isEmpty() ? null : recent.get(0).getId());
+            } else {
+                recent = history.latest();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to fetch messages for " + currentContextType + "/" + currentContextId + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<MessageDto> loaded = recent;
+        WebSocketClient.goLive(live -> {
+            List<MessageDto> merged = MessageHistory.merge(loaded, live);
+            if (store != null) {
+                try {
+                    store.appendAll(merged); // Already stored ones are skipped
+                } catch (IOException e) {
+                    System.err.println("Failed to store messages locally: " + e.getMessage());
+                }
+            }
+            if (!merged.isEmpty()) {
+                System.out.println("Recent messages:");
+                merged.forEach(TeamFlowClient::printMessage);
+            }
+            return merged;
+        });
 
-        System.out.println("\nEnter messages to send, or /back to return to context selection, /exit to quit:");
+        System.out.println("\nEnter messages to send, or /more for older messages, /watch or /unwatch to keep following this chat after leaving it, /ping for connection status and send latencies, /back to return to context selection, /exit to quit:");
         while (true) {
             String messageInput = scanner.nextLine();
-            if ("/back".equals(messageInput)) {
-                WebSocketClient.closeWebSocket();
+            if ("/more".equals(messageInput)) {
+                showOlderMessages(history);
+            } else if ("/ping".equals(messageInput)) {
+                System.out.println("Chat connection: " + WebSocketClient.connectionSummary());
+                System.out.println(WebSocketClient.deliverySummary());
+            } else if ("/watch".equals(messageInput) || "/unwatch".equals(messageInput)) {
+                boolean watch = "/watch".equals(messageInput);
+                WebSocketClient.setWatched(currentContextType, currentContextId, watch);
+                System.out.println(watch ? "Watching this chat; its messages keep showing after /back."
+                        : "No longer watching this chat.");
+            } else if ("/back".equals(messageInput)) {
+                history.close();
+                HttpClient.cancelInFlight();
+                WebSocketClient.leaveChat(); // The session stays open for the next chat
+                closeMessageStore(store);
                 currentContextId = null; // Signal to go back
                 currentContextType = null;
                 System.out.println("--- Exiting Chat ---");
                 return;
             } else if ("/exit".equals(messageInput)) {
                 System.out.println("Exiting application.");
+                history.close();
                 WebSocketClient.closeWebSocket();
+                closeMessageStore(store);
                 System.exit(0);
                 return;
             } else if (messageInput.trim().isEmpty()) {
                 continue; // Ignore empty input
             }
             else {
-                WebSocketClient.sendMessage(messageInput);
-                // Optional delay
-                try { Thread.sleep(100); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                WebSocketClient.sendMessage(currentContextType, currentContextId, messageInput); // Queued; sent in the background
             }
         }
     }
 
 
+    // Local log of the current chat; null (chat still works, just without caching) if it can't be opened
+    private static MessageStore openMessageStore() {
+        try {
+            return MessageStore.open(currentContextType, currentContextId);
+        } catch (IOException e) {
+            System.err.println("Local message store unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void closeMessageStore(MessageStore store) {
+        WebSocketClient.setMessageListener(null);
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close local message store: " + e.getMessage());
+        }
+    }
+
+    // Handles "/more": prints the page before the oldest message shown so far
+    private static void showOlderMessages(MessageHistory history) {
+        if (!history.hasMore()) {
+            System.out.println("No older messages.");
+            return;
+        }
+        try {
+            List<MessageDto> older = history.older();
+            if (older.isEmpty()) {
+                System.out.println("No older messages.");
+                return;
+            }
+            System.out.println("--- Older messages ---");
+            older.forEach(TeamFlowClient::printMessage);
+            System.out.println(history.hasMore() ? "--- (/more for older) ---" : "--- Start of conversation ---");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to fetch older messages: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printMessage(MessageDto msg) {
+        // Use createdAt directly as String, provide default if null
+        String timestamp = msg.getCreatedAt() != null ? msg.getCreatedAt() : "Timestamp N/A";
+        String sender = (msg.getSender() != null && msg.getSender().getUsername() != null) ? msg.getSender().getUsername() : "Unknown";
+        System.out.printf("[%s] %s: %s\n", timestamp, sender, msg.getContent());
+    }
+
     // Updated printList to use NamedEntity
     private static void printList(List<? extends NamedEntity> items) {
         if (items == null || items.isEmpty()) return;
@@ -1,6 +1,10 @@
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import dto.MessageDto;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.stomp.*;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
@@ -12,62 +16,277 @@ import org.springframework.web.socket.sockjs.client.SockJsClient;
 import org.springframework.web.socket.sockjs.client.Transport;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.socket.sockjs.client.RestTemplateXhrTransport; // Import fallback transport
 
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets; // Import Charset
 import java.net.URI;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map; // Import Map
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public class WebSocketClient {
 
-    private static StompSession stompSession = null;
+    private static volatile StompSession stompSession = null; // Also read by the outbox sender thread
     private static WebSocketStompClient stompClient = null;
     private static ThreadPoolTaskScheduler taskScheduler = null;
-    private static CountDownLatch connectionLatch = null;
-    private static final ObjectMapper objectMapper = new ObjectMapper(); // For sending JSON
+
+    public enum ConnectionState { DISCONNECTED, CONNECTING, CONNECTED, RECONNECTING }
+
+    private static final String WS_URL = "ws://localhost:51738/chat"; // SockJS base endpoint; SockJS handles fallback
+    private static final long RECONNECT_BASE_BACKOFF_MS = Long.getLong("teamflow.ws.reconnectBaseMs", 500);
+    private static final long RECONNECT_MAX_BACKOFF_MS = Long.getLong("teamflow.ws.reconnectMaxMs", 30_000);
+    // STOMP heart-beats in both directions (0 disables); a session that hears nothing for three
+    // intervals is treated as lost
+    private static final long HEARTBEAT_MS = Long.getLong("teamflow.ws.heartbeatMs", 10_000);
+    // Receipt probes: measure the round trip and, on a server that has shown it answers them, fail
+    // over when it stops. Stale sessions are otherwise left to the heart-beats.
+    private static final long PROBE_INTERVAL_MS = Long.getLong("teamflow.ws.probeMs", 15_000);
+    private static final long PROBE_TIMEOUT_MS = Long.getLong("teamflow.ws.probeTimeoutMs", 5_000);
+    private static final String PROBE_DESTINATION = "/topic/teamflow-ping";
+    private static final long CONNECT_TIMEOUT_MS = Long.getLong("teamflow.ws.connectTimeoutMs", 15_000);
+    // A chat send is confirmed by its receipt or echo. One that gets neither (e.g. sent to a chat
+    // left right after) counts as delivered once its session has outlived the heart-beat loss
+    // detection (three intervals) by a margin; until then it is re-sent if the session drops.
+    private static final long CONFIRM_AFTER_MS = Long.getLong("teamflow.outbox.confirmAfterMs",
+            HEARTBEAT_MS > 0 ? 4 * HEARTBEAT_MS : 30_000);
+
+    // Reconnect supervisor state (guarded by WebSocketClient.class)
+    private static volatile ConnectionState connectionState = ConnectionState.DISCONNECTED;
+    private static boolean autoReconnect = false; // True between connect() and closeWebSocket()
+    private static String sessionToken = null; // Token the session was opened with
+    private static int reconnectAttempts = 0;
+    // The current outage: why the last attempt failed, and whether the user has been told about it.
+    // Outside a chat an outage is reported once; retries only show in connectionSummary().
+    private static String lastConnectionError = null;
+    private static boolean outageReported = false;
+    // SockJS logs every failed attempt with a stack trace; the reason is in connectionSummary() instead.
+    // Held here because java.util.logging only keeps weak references to loggers.
+    private static final java.util.logging.Logger SOCKJS_LOG = java.util.logging.Logger.getLogger("org.springframework.web.socket.sockjs.client");
+    private static long sessionGeneration = 0;
+    private static ScheduledFuture<?> reconnectTask = null;
+    private static WebSocketHttpHeaders handshakeHeaders = null;
+    private static StompHeaders connectHeaders = null;
+    private static ScheduledFuture<?> probeTask = null; // Receipt probes of the current session
+
+    // Round-trip time of the current session from the receipt probes; -1 until measured
+    private static volatile long lastRoundTripMillis = -1;
+    private static volatile double smoothedRoundTripMillis = -1;
+    // Set once the server has ignored or rejected a probe (e.g. Spring's simple broker sends no
+    // receipts for SUBSCRIBE); no further probes are sent for the rest of the run
+    private static volatile boolean probesUnsupported = false;
+    private static volatile boolean probeAnswered = false; // This session has answered a probe
+    private static volatile boolean probeOutstanding = false;
 
     // Keep track of context for sending messages
     private static String currentDestination = null;
     private static String currentSubscriptionTopic = null;
 
+    // Topics that should be subscribed (the active chat plus watched ones), and their subscriptions
+    // on the current session. Re-subscribed after every reconnect. Guarded by WebSocketClient.class.
+    private static final Set<String> subscribedTopics = new LinkedHashSet<>();
+    private static final Set<String> watchedTopics = new HashSet<>();
+    private static final Map<String, StompSession.Subscription> activeSubscriptions = new HashMap<>();
+    private static final ChatFrameHandler FRAME_HANDLER = new ChatFrameHandler();
+
+    // While a chat's history is loading, its live messages are held here instead of being shown,
+    // so they can be merged with the history without gaps or duplicates. Guarded by WebSocketClient.class.
+    private static List<MessageDto> heldMessages = null;
+
+    // Journaled outbound messages for the logged-in user; null falls back to sending directly
+    private static final Path OUTBOX_DIR = Path.of(System.getProperty("teamflow.outbox.dir",
+            System.getProperty("user.home") + "/.teamflow"));
+    private static volatile OutboundQueue outbox = null;
+
+    // Body of a chat SEND
+    record ChatPayload(String content) {}
+    private static final ObjectWriter CHAT_PAYLOAD_WRITER = JsonCodecs.writer(ChatPayload.class);
+    // SEND headers per destination, reused for every message; only touched by the outbox sender thread
+    private static final Map<String, StompHeaders> sendHeaders = new HashMap<>();
+
+    // Receipts and echoes of our chat sends (-Dteamflow.chat.receipts=true requests receipts)
+    private static final DeliveryTracker deliveries = new DeliveryTracker(
+            Boolean.parseBoolean(System.getProperty("teamflow.chat.receipts", "false")),
+            Integer.getInteger("teamflow.chat.receiptWindow", 32));
+    private static volatile String localUsername = null; // Sender name our echoes come back with
+
+    // Incoming chat messages are handed off here so the transport thread never waits on the terminal
+    private static final InboundPipeline inbound = createInboundPipeline();
+
+    // Also receives every incoming message of the active chat (e.g. to persist it); called on the STOMP thread
+    private static volatile Consumer<MessageDto> messageListener = null;
+
+
+    // Opens the long-lived STOMP session for a user; called once after login. Returns immediately:
+    // the handshake runs in the background, and chats can be joined (and messages queued) meanwhile.
+    public static void connect(String authToken) {
+        synchronized (WebSocketClient.class) {
+            if (autoReconnect && authToken.equals(sessionToken)) {
+                return; // Already connected or connecting for this login
+            }
+        }
+        if (stompClient != null) {
+            closeWebSocket(); // Different login: start from scratch
+        }
+        createStompClient();
+
+        // Headers for the initial HTTP connection (SockJS info request) and WebSocket handshake
+        handshakeHeaders = new WebSocketHttpHeaders();
+        handshakeHeaders.setOrigin("http://localhost:5173"); // Explicitly set Origin for handshake check
+
+        // STOMP Headers for connection (including Auth token); reused by every reconnect
+        connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + authToken);
+
+        System.out.println("Connecting to chat server via SockJS: " + WS_URL);
+        synchronized (WebSocketClient.class) {
+            autoReconnect = true;
+            reconnectAttempts = 0;
+            lastConnectionError = null;
+            outageReported = false;
+            sessionToken = authToken;
+        }
+        openSession();
+    }
 
+    // Kept for callers that connect per chat: ensures the shared session and joins the chat on it
     public static void connectWebSocket(String currentContextType, UUID currentContextId, String authToken) {
-        if (stompSession != null && stompSession.isConnected()) {
-            System.out.println("Already connected.");
+        connect(authToken);
+        joinChat(currentContextType, currentContextId);
+    }
+
+    // Makes a context the active chat: sends go to it and its messages reach the message listener.
+    // On a connected session this is a single SUBSCRIBE frame (none if the chat is watched already).
+    public static void joinChat(String contextType, UUID contextId) {
+        joinChat(contextType, contextId, false);
+    }
+
+    // As above; with holdMessages, live messages are held back until goLive() so the history can be
+    // loaded while the subscription is already receiving
+    public static void joinChat(String contextType, UUID contextId, boolean holdMessages) {
+        String chatPath = chatPath(contextType, contextId);
+        if (chatPath == null) {
+            System.err.println("Unknown context type: " + contextType);
             return;
         }
+        synchronized (WebSocketClient.class) {
+            heldMessages = holdMessages ? new ArrayList<>() : null;
+            currentDestination = "/app/chat/" + chatPath;
+            currentSubscriptionTopic = "/topic/chat/" + chatPath;
+            subscribe(currentSubscriptionTopic);
+        }
+        if (connectionState != ConnectionState.CONNECTED) {
+            System.out.println("Chat server not connected yet (" + connectionSummary() + "); messages are queued until it is.");
+        }
+    }
 
-        // Determine destination and subscription topic based on context
-        switch (currentContextType.toLowerCase()) {
-            case "sprint":
-                currentDestination = "/app/chat/sprint/" + currentContextId;
-                currentSubscriptionTopic = "/topic/chat/sprint/" + currentContextId;
-                break;
-            case "epic":
-                currentDestination = "/app/chat/epic/" + currentContextId;
-                currentSubscriptionTopic = "/topic/chat/epic/" + currentContextId;
-                break;
-            case "userstory": // Assuming server uses user-story
-                currentDestination = "/app/chat/user-story/" + currentContextId;
-                currentSubscriptionTopic = "/topic/chat/user-story/" + currentContextId;
-                break;
-            case "task":
-                currentDestination = "/app/chat/task/" + currentContextId;
-                currentSubscriptionTopic = "/topic/chat/task/" + currentContextId;
-                break;
-            default:
-                System.err.println("Unknown context type: " + currentContextType);
-                return;
+    // Hands the messages held since joinChat to catchUp, which returns what it showed, and
+    // switches to showing them live. catchUp runs without the client lock (it prints and writes to
+    // disk, and the transport thread needs the lock for every frame); messages arriving meanwhile
+    // stay held and are passed on after it, so none is shown before the catch-up.
+    public static void goLive(UnaryOperator<List<MessageDto>> catchUp) {
+        List<MessageDto> held;
+        synchronized (WebSocketClient.class) {
+            held = heldMessages != null ? heldMessages : List.of();
+            if (heldMessages != null) heldMessages = new ArrayList<>(); // Keep holding during the catch-up
+        }
+        Set<UUID> shown = new HashSet<>();
+        for (MessageDto message : catchUp.apply(held)) {
+            if (message.getId() != null) shown.add(message.getId());
         }
+        synchronized (WebSocketClient.class) {
+            if (heldMessages == null) return; // Chat left meanwhile
+            for (MessageDto late : heldMessages) {
+                if (late.getId() == null || !shown.contains(late.getId())) {
+                    // Through the pipeline like any live message, ahead of everything classified after this
+                    inbound.publish(new InboundPipeline.Inbound(currentSubscriptionTopic, late,
+                            InboundPipeline.Disposition.ACTIVE, System.nanoTime()));
+                }
+            }
+            heldMessages = null;
+        }
+    }
 
+    // Leaves the active chat; its topic stays subscribed only if it is watched
+    public static synchronized void leaveChat() {
+        heldMessages = null;
+        String topic = currentSubscriptionTopic;
+        currentDestination = null;
+        currentSubscriptionTopic = null;
+        if (topic != null && !watchedTopics.contains(topic)) {
+            unsubscribe(topic);
+        }
+    }
+
+    // Watched chats stay subscribed after leaving them; their messages are shown tagged with the chat
+    public static synchronized void setWatched(String contextType, UUID contextId, boolean watched) {
+        String chatPath = chatPath(contextType, contextId);
+        if (chatPath == null) return;
+        String topic = "/topic/chat/" + chatPath;
+        if (watched) {
+            watchedTopics.add(topic);
+            subscribe(topic);
+        } else {
+            watchedTopics.remove(topic);
+            if (!topic.equals(currentSubscriptionTopic)) {
+                unsubscribe(topic);
+            }
+        }
+    }
+
+    public static synchronized int subscriptionCount() {
+        return subscribedTopics.size();
+    }
+
+    private static void subscribe(String topic) {
+        if (subscribedTopics.add(topic)) {
+            subscribeOnSession(topic);
+        }
+    }
+
+    private static void unsubscribe(String topic) {
+        subscribedTopics.remove(topic);
+        StompSession.Subscription subscription = activeSubscriptions.remove(topic);
+        if (subscription != null) {
+            try {
+                subscription.unsubscribe();
+            } catch (IllegalStateException e) {
+                // Session already gone; nothing to undo
+            }
+        }
+    }
+
+    // Subscribes on the live session if there is one; otherwise afterConnected picks the topic up
+    private static void subscribeOnSession(String topic) {
+        StompSession session = stompSession;
+        if (session == null || !session.isConnected()) return;
+        try {
+            activeSubscriptions.put(topic, session.subscribe(topic, FRAME_HANDLER));
+        } catch (IllegalStateException e) {
+            // Lost meanwhile; the reconnect re-subscribes
+        }
+    }
+
+    // Builds the STOMP client and its scheduler once; reconnects reuse them
+    private static void createStompClient() {
+        if (!Boolean.getBoolean("teamflow.ws.verbose") && SOCKJS_LOG.getLevel() == null) {
+            SOCKJS_LOG.setLevel(java.util.logging.Level.OFF); // -Dteamflow.ws.verbose=true keeps them
+        }
         // SockJS Transports
         List<Transport> transports = new ArrayList<>(2); // Increase capacity
         // Use StandardWebSocketClient for the WebSocket transport part of SockJS
@@ -80,49 +299,348 @@ public class WebSocketClient {
         stompClient = new WebSocketStompClient(transport);
 
         // Use Jackson for message conversion (ensure DTOs are compatible)
-        // Revert to only Jackson converter
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
-
-        // Task scheduler for heartbeats, etc.
+        // Shares the REST client's mapper instead of building its own
+        // Chat sends arrive already serialized and bypass Jackson here; chat messages are decoded
+        // by ChatMessageConverter, anything else by the shared mapper
+        stompClient.setMessageConverter(new CompositeMessageConverter(List.of(
+                new SerializedJsonConverter(), new ChatMessageConverter(),
+                new MappingJackson2MessageConverter(JsonCodecs.mapper()))));
+
+        // Task scheduler for heartbeats, receipt timeouts, probes and reconnect attempts
         taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setThreadNamePrefix("teamflow-ws-");
         taskScheduler.afterPropertiesSet();
         stompClient.setTaskScheduler(taskScheduler);
-        // Disable default heartbeats for simplicity, server config might override
-        stompClient.setDefaultHeartbeat(new long[]{0, 0});
+        // Negotiated with the server on CONNECT; missed server heart-beats surface as ConnectionLostException
+        stompClient.setDefaultHeartbeat(new long[]{HEARTBEAT_MS, HEARTBEAT_MS});
+        stompClient.setReceiptTimeLimit(PROBE_TIMEOUT_MS);
+    }
 
-        // Connection URL (base endpoint for SockJS)
-        // Use http/https for SockJS when fallback transports are involved
-        String url = "ws://localhost:51738/chat"; // Try ws:// again, let SockJS handle fallback if needed
+    public static ConnectionState getConnectionState() {
+        return connectionState;
+    }
 
-        // Headers for the initial HTTP connection (SockJS info request) and WebSocket handshake
-        WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
-        handshakeHeaders.setOrigin("http://localhost:5173"); // Explicitly set Origin for handshake check
+    // Starts one connection attempt. Each attempt gets its own generation, so late callbacks from
+    // an abandoned attempt or a dead session can't trigger a second reconnect.
+    private static void openSession() {
+        long generation;
+        WebSocketStompClient client;
+        synchronized (WebSocketClient.class) {
+            reconnectTask = null;
+            client = stompClient;
+            if (!autoReconnect || client == null) return;
+            generation = ++sessionGeneration;
+            setState(reconnectAttempts == 0 ? ConnectionState.CONNECTING : ConnectionState.RECONNECTING);
+        }
+        try {
+            client.connectAsync(WS_URL, handshakeHeaders, connectHeaders, new MyStompSessionHandler(generation))
+                    .whenComplete((session, error) -> {
+                        if (error != null) onConnectionLost(generation, "connect failed: " + error.getMessage());
+                    });
+            // A server that accepts the socket but never answers CONNECT would otherwise stall us forever
+            taskScheduler.schedule(() -> {
+                if (connectionState != ConnectionState.CONNECTED) {
+                    onConnectionLost(generation, "no CONNECTED frame within " + CONNECT_TIMEOUT_MS + " ms");
+                }
+            }, Instant.now().plusMillis(CONNECT_TIMEOUT_MS));
+        } catch (RuntimeException e) {
+            onConnectionLost(generation, "connect failed: " + e.getMessage());
+        }
+    }
 
-        // STOMP Headers for connection (including Auth token)
-        StompHeaders connectHeaders = new StompHeaders();
-        connectHeaders.add("Authorization", "Bearer " + authToken);
+    // Called when a session of the given generation drops or fails to connect; schedules the next
+    // attempt with "full jitter" exponential backoff, like the REST retries in HttpTransport.
+    private static synchronized void onConnectionLost(long generation, String reason) {
+        if (generation != sessionGeneration || reconnectTask != null) {
+            return; // Stale callback, or a reconnect is already scheduled
+        }
+        sessionGeneration++; // Anything the lost attempt still reports from here on is stale
+        stompSession = null;
+        stopProbes();
+        if (!autoReconnect || taskScheduler == null) {
+            setState(ConnectionState.DISCONNECTED);
+            return;
+        }
+        boolean wasConnected = connectionState == ConnectionState.CONNECTED;
+        int attempt = ++reconnectAttempts;
+        long capped = Math.min(RECONNECT_MAX_BACKOFF_MS, RECONNECT_BASE_BACKOFF_MS << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(capped + 1);
+        setState(ConnectionState.RECONNECTING);
+        lastConnectionError = reason;
+        boolean inChat = currentSubscriptionTopic != null;
+        if (inChat) {
+            System.err.printf(wasConnected ? "Chat connection lost (%s); reconnecting in %.1fs (attempt %d)%n"
+                    : "Chat reconnect failed (%s); retrying in %.1fs (attempt %d)%n", reason, delay / 1000.0, attempt);
+            outageReported = true;
+        } else if (!outageReported && wasConnected) {
+            // A connection that never came up isn't news outside a chat; joinChat mentions it
+            System.err.println("Chat connection lost (" + reason + "); reconnecting in the background.");
+            outageReported = true;
+        }
+        reconnectTask = taskScheduler.schedule(WebSocketClient::openSession, Instant.now().plusMillis(delay));
+    }
+
+    private static void setState(ConnectionState state) {
+        connectionState = state;
+    }
+
+    // Smoothed round-trip time of the chat session in milliseconds, or -1 if not measured yet
+    public static long getRoundTripMillis() {
+        return Math.round(smoothedRoundTripMillis);
+    }
+
+    // One-line connection report, e.g. "CONNECTED, rtt 42 ms (last 40 ms)", or while reconnecting
+    // "RECONNECTING (attempt 7, last error: connect failed: ...)"
+    public static String connectionSummary() {
+        synchronized (WebSocketClient.class) {
+            if (connectionState != ConnectionState.CONNECTED && lastConnectionError != null) {
+                return connectionState + " (attempt " + reconnectAttempts + ", last error: " + lastConnectionError + ")";
+            }
+        }
+        long last = lastRoundTripMillis;
+        if (probesUnsupported) {
+            return connectionState + ", rtt not available (server doesn't answer receipt probes)";
+        }
+        return connectionState + (last < 0 ? ", rtt not measured yet"
+                : ", rtt " + getRoundTripMillis() + " ms (last " + last + " ms)");
+    }
+
+    // Console, store (via the message listener) and metrics stages; see InboundPipeline
+    private static InboundPipeline createInboundPipeline() {
+        InboundPipeline pipeline = new InboundPipeline(Integer.getInteger("teamflow.chat.inboundBuffer", 256),
+                InboundPipeline.Overflow.valueOf(System.getProperty("teamflow.chat.overflow", "coalesce").toUpperCase()));
+        pipeline.subscribe("console", WebSocketClient::render, true);
+        pipeline.subscribe("store", item -> {
+            Consumer<MessageDto> listener = messageListener;
+            if (listener != null && item.disposition() == InboundPipeline.Disposition.ACTIVE && isActiveTopic(item.topic())) {
+                listener.accept(item.message()); // Still the same chat (not left while the item was queued)
+            }
+        }, false);
+        pipeline.subscribe("metrics", item -> deliveries.onMessage(item.topic(), item.message(), localUsername, item.receivedAt()), false);
+        return pipeline;
+    }
+
+    private static synchronized boolean isActiveTopic(String topic) {
+        return topic == null || topic.equals(currentSubscriptionTopic);
+    }
+
+    private static void render(InboundPipeline.Inbound item) {
+        MessageDto message = item.message();
+        String senderUsername = (message.getSender() != null) ? message.getSender().getUsername() : "Unknown";
+        switch (item.disposition()) {
+            case WATCHED -> {
+                // A watched chat other than the one being viewed
+                String topic = item.topic();
+                System.out.print("\n[" + topic.substring(topic.lastIndexOf("/chat/") + 6) + "] " + senderUsername + ": " + message.getContent() + "\n> ");
+            }
+            // String createdAtStr = (message.getCreatedAt() != null) ? message.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : "No timestamp"; // REMOVED due to parsing issues
+            case ACTIVE -> System.out.print("\n" + senderUsername + ": " + message.getContent() + "\n> "); // Removed timestamp from output
+            case HELD -> { } // Shown with the history by goLive
+        }
+    }
+
+    // Send->receipt and send->echo latency percentiles of this run's chat messages
+    public static String deliverySummary() {
+        return deliveries.summary();
+    }
 
-        // Session Handler
-        StompSessionHandler sessionHandler = new MyStompSessionHandler();
+    // Runs a receipt probe right away and then every PROBE_INTERVAL_MS while the session lives
+    private static void startProbes(long generation, StompSession session) {
+        if (PROBE_INTERVAL_MS <= 0 || taskScheduler == null || probesUnsupported) return;
+        stopProbes();
+        lastRoundTripMillis = -1;
+        smoothedRoundTripMillis = -1;
+        probeAnswered = false;
+        probeOutstanding = false;
+        probeTask = taskScheduler.scheduleWithFixedDelay(() -> probe(generation, session),
+                Instant.now(), Duration.ofMillis(PROBE_INTERVAL_MS));
+    }
 
-        connectionLatch = new CountDownLatch(1);
-        System.out.println("Attempting to connect to WebSocket via SockJS: " + url);
+    private static void stopProbes() {
+        if (probeTask != null) {
+            probeTask.cancel(false);
+            probeTask = null;
+        }
+    }
 
+    // SUBSCRIBE with a receipt request to a topic nobody publishes to, then UNSUBSCRIBE once the
+    // receipt arrives; the time to the receipt is the round trip. Not every broker answers this
+    // (Spring's simple broker only sends receipts for DISCONNECT), so a missing receipt only
+    // counts as a dead session once this session has answered a probe before. Until then it
+    // means the server doesn't support probes, and they are switched off.
+    private static void probe(long generation, StompSession session) {
+        if (!session.isConnected() || probesUnsupported || probeOutstanding) return;
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(PROBE_DESTINATION);
+        headers.setReceipt(UUID.randomUUID().toString());
+        long sentAt = System.nanoTime();
+        StompSession.Subscription ping;
+        probeOutstanding = true;
         try {
-            // Connect asynchronously
-            stompClient.connectAsync(url, handshakeHeaders /* Pass handshake headers */, connectHeaders, sessionHandler);
+            ping = session.subscribe(headers, FRAME_HANDLER);
+        } catch (IllegalStateException e) {
+            probeOutstanding = false;
+            return; // Closing; the transport error path takes over
+        }
+        ping.addReceiptTask(() -> {
+            probeOutstanding = false;
+            probeAnswered = true;
+            recordRoundTrip((System.nanoTime() - sentAt) / 1_000_000);
+            try {
+                ping.unsubscribe();
+            } catch (IllegalStateException e) {
+                // Session went away meanwhile
+            }
+        });
+        ping.addReceiptLostTask(() -> {
+            probeOutstanding = false;
+            if (!probeAnswered) {
+                disableProbes();
+                try {
+                    ping.unsubscribe();
+                } catch (IllegalStateException e) {
+                    // Session went away meanwhile
+                }
+                return;
+            }
+            onConnectionLost(generation, "no answer from server within " + PROBE_TIMEOUT_MS + " ms");
+            try {
+                session.disconnect(); // Half-open socket; its late callbacks are ignored as stale
+            } catch (RuntimeException e) {
+                // Already broken
+            }
+        });
+    }
 
-            // Wait for connection for a reasonable time
-            if (connectionLatch.await(15, TimeUnit.SECONDS)) { // Increased timeout slightly for fallback
-                System.out.println("WebSocket connection established (via SockJS/STOMP).");
-            } else {
-                System.err.println("WebSocket connection timed out or failed after fallback attempts.");
-                closeWebSocket(); // Clean up if connection failed
+    private static synchronized void disableProbes() {
+        probesUnsupported = true;
+        stopProbes();
+    }
+
+    // Keeps a TCP-style smoothed estimate (7/8 old, 1/8 new) next to the last sample
+    private static void recordRoundTrip(long millis) {
+        lastRoundTripMillis = millis;
+        double smoothed = smoothedRoundTripMillis;
+        smoothedRoundTripMillis = smoothed < 0 ? millis : smoothed + (millis - smoothed) / 8;
+    }
+
+    // "<type>/<id>" part shared by a context's send destination and topic; null for unknown types
+    private static String chatPath(String contextType, UUID contextId) {
+        switch (contextType.toLowerCase()) {
+            case "sprint": return "sprint/" + contextId;
+            case "epic": return "epic/" + contextId;
+            case "userstory": return "user-story/" + contextId; // Assuming server uses user-story
+            case "task": return "task/" + contextId;
+            default: return null;
+        }
+    }
+
+    // Opens (or switches to) the outbound journal of a user and replays anything left unsent from
+    // an earlier run. Scoped per user so queued messages are never sent under someone else's login.
+    public static void openOutbox(String username) {
+        closeOutbox();
+        localUsername = username;
+        Path journal = OUTBOX_DIR.resolve("outbox-" + username.replaceAll("[^A-Za-z0-9._-]", "_") + ".jsonl");
+        try {
+            outbox = OutboundQueue.open(journal, WebSocketClient::trySend);
+            int pending = outbox.pendingCount();
+            if (pending > 0) {
+                System.out.println(pending + " unsent message(s) from a previous session will be sent once connected.");
             }
-        } catch (Exception e) {
-            System.err.println("WebSocket connection failed: " + e.getMessage());
-            e.printStackTrace();
-            closeWebSocket(); // Clean up on exception
+        } catch (IOException e) {
+            System.err.println("Outbound message journal unavailable, sending directly: " + e.getMessage());
+            outbox = null;
+        }
+    }
+
+    public static void closeOutbox() {
+        OutboundQueue queue = outbox;
+        outbox = null;
+        if (queue == null) return;
+        try {
+            queue.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close outbound message journal: " + e.getMessage());
+        }
+    }
+
+    // Queues a message for a context's chat; it is journaled and sent in order in the background,
+    // including across disconnects, so the caller never waits on the socket.
+    public static void sendMessage(String contextType, UUID contextId, String messageContent) {
+        String chatPath = chatPath(contextType, contextId);
+        if (chatPath == null) {
+            System.err.println("Unknown context type: " + contextType);
+            return;
+        }
+        OutboundQueue queue = outbox;
+        if (queue == null) {
+            sendMessage(messageContent); // No journal: best effort on the current session
+            return;
+        }
+        try {
+            queue.enqueue("/app/chat/" + chatPath, messageContent);
+            StompSession session = stompSession;
+            if (session == null || !session.isConnected()) {
+                System.out.println("Not connected; message queued and will be sent on reconnect.");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to queue message: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while waiting to queue message.");
+        }
+    }
+
+    // Outbox transport: sends one journaled message on the current session, tagged with its client id.
+    // The queue keeps it as unconfirmed until its receipt or echo (or CONFIRM_AFTER_MS) confirms it.
+    private static boolean trySend(OutboundQueue.OutboundMessage message) {
+        OutboundQueue queue = outbox;
+        StompSession session = stompSession;
+        if (session == null || !session.isConnected()) {
+            return false;
+        }
+        StompHeaders headers = sendHeaders.computeIfAbsent(message.destination(), destination -> {
+            StompHeaders preset = new StompHeaders();
+            preset.setDestination(destination);
+            preset.setContentType(MediaType.APPLICATION_JSON);
+            return preset;
+        });
+        headers.set("client-message-id", message.clientId().toString()); // Replaces the previous message's id
+        // The unacknowledged window only applies once the broker has been seen to send receipts
+        boolean windowed = deliveries.windowed();
+        try {
+            while (windowed && !deliveries.acquire(200)) {
+                if (!session.isConnected()) {
+                    return false; // Lost while waiting for a slot; resent after reconnecting
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (deliveries.receiptsEnabled()) {
+            headers.setReceipt(message.clientId().toString());
+        } else {
+            headers.remove(StompHeaders.RECEIPT);
+        }
+        try {
+            // Blocks while the socket can't take more, which holds back the outbox sender (not the user)
+            long sentAt = System.nanoTime();
+            StompSession.Receiptable receiptable = session.send(headers, CHAT_PAYLOAD_WRITER.writeValueAsBytes(new ChatPayload(message.content())));
+            Runnable delivered = () -> {
+                if (queue != null) queue.confirm(message.clientId());
+            };
+            deliveries.sent(message.destination().replaceFirst("^/app/", "/topic/"), message.content(), sentAt, receiptable, windowed, delivered);
+            ThreadPoolTaskScheduler scheduler = taskScheduler;
+            if (scheduler != null) {
+                scheduler.schedule(() -> {
+                    if (stompSession == session && session.isConnected()) delivered.run();
+                }, Instant.now().plusMillis(CONFIRM_AFTER_MS));
+            }
+            return true;
+        } catch (JsonProcessingException | RuntimeException e) { // Not connected anymore, or the write failed
+            if (windowed) deliveries.release();
+            return false;
         }
     }
 
@@ -147,10 +665,29 @@ public class WebSocketClient {
         }
     }
 
+    public static void setMessageListener(Consumer<MessageDto> listener) {
+        messageListener = listener;
+    }
+
     public static void closeWebSocket() {
         System.out.println("Closing WebSocket connection...");
-        if (stompSession != null && stompSession.isConnected()) {
-            stompSession.disconnect();
+        synchronized (WebSocketClient.class) {
+            autoReconnect = false; // Stop the supervisor before tearing down
+            sessionToken = null;
+            sessionGeneration++;
+            subscribedTopics.clear();
+            watchedTopics.clear();
+            heldMessages = null;
+            activeSubscriptions.clear();
+            stopProbes();
+            if (reconnectTask != null) {
+                reconnectTask.cancel(false);
+                reconnectTask = null;
+            }
+        }
+        StompSession session = stompSession;
+        if (session != null && session.isConnected()) {
+            session.disconnect();
         }
         stompSession = null; // Clear session reference
 
@@ -168,15 +705,12 @@ public class WebSocketClient {
 
         currentDestination = null;
         currentSubscriptionTopic = null;
+        setState(ConnectionState.DISCONNECTED);
         System.out.println("WebSocket resources released.");
-         // Ensure latch is counted down if connection failed or closed prematurely
-        if (connectionLatch != null && connectionLatch.getCount() > 0) {
-            connectionLatch.countDown();
-        }
     }
 
-    // Inner class for STOMP Session Handling
-    private static class MyStompSessionHandler extends StompSessionHandlerAdapter {
+    // Receives MESSAGE frames for every subscribed chat topic
+    private static class ChatFrameHandler implements StompFrameHandler {
 
         @Override
         public Type getPayloadType(StompHeaders headers) {
@@ -186,54 +720,129 @@ public class WebSocketClient {
 
         @Override
         public void handleFrame(StompHeaders headers, Object payload) {
-            // This method is called for received messages
+            // This method is called for received messages, on the transport thread: classify and hand off only
+            long receivedAt = System.nanoTime();
             if (payload instanceof MessageDto) {
                 MessageDto message = (MessageDto) payload;
-                String senderUsername = (message.getSender() != null) ? message.getSender().getUsername() : "Unknown";
-                // String createdAtStr = (message.getCreatedAt() != null) ? message.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : "No timestamp"; // REMOVED due to parsing issues
-                System.out.printf("\n%s: %s\n> ", senderUsername, message.getContent()); // Removed timestamp from output
+                String topic = headers.getDestination();
+                InboundPipeline.Disposition disposition;
+                synchronized (WebSocketClient.class) {
+                    if (topic != null && !topic.equals(currentSubscriptionTopic)) {
+                        disposition = InboundPipeline.Disposition.WATCHED;
+                    } else if (heldMessages != null) {
+                        heldMessages.add(message); // History still loading; merged in by goLive
+                        disposition = InboundPipeline.Disposition.HELD;
+                    } else {
+                        disposition = InboundPipeline.Disposition.ACTIVE;
+                    }
+                }
+                inbound.publish(new InboundPipeline.Inbound(topic, message, disposition, receivedAt));
             } else {
                  System.out.println("Received unexpected payload type: " + (payload != null ? payload.getClass().getName() : "null"));
                  System.out.print("> "); // Re-print prompt
             }
         }
+    }
+
+    // Passes JSON bodies that were serialized by the caller (byte[]) through unchanged
+    private static class SerializedJsonConverter extends AbstractMessageConverter {
+
+        SerializedJsonConverter() {
+            super(MimeTypeUtils.APPLICATION_JSON);
+        }
 
         @Override
-        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
-            System.out.println("STOMP session connected."); // Removed problematic getUri() call
-            stompSession = session; // Store the session
+        protected boolean supports(Class<?> clazz) {
+            return byte[].class == clazz;
+        }
 
-            // Subscribe to the topic determined during connection setup
-            if (currentSubscriptionTopic != null) {
-                System.out.println("Subscribing to topic: " + currentSubscriptionTopic);
-                session.subscribe(currentSubscriptionTopic, this); // 'this' handles received messages via handleFrame
-            } else {
-                 System.err.println("Cannot subscribe: Subscription topic not set.");
+        @Override
+        protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+            return false; // Incoming frames are always read by Jackson
+        }
+
+        @Override
+        protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+            return payload;
+        }
+    }
+
+    // Connection lifecycle of the shared session. One instance per connection attempt; callbacks from
+    // a superseded attempt are ignored.
+    private static class MyStompSessionHandler extends StompSessionHandlerAdapter {
+
+        private final long generation;
+
+        MyStompSessionHandler(long generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return String.class; // Only ERROR frames reach the session handler
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            System.err.println("STOMP error from server: " + headers.getFirst("message") + (payload != null ? " " + payload : ""));
+            if (probeOutstanding && !probeAnswered) {
+                disableProbes(); // Most likely the probe subscription was refused; don't repeat it after reconnecting
+            }
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            int attempts;
+            boolean announce; // Only a reported outage gets a "reconnected"
+            synchronized (WebSocketClient.class) {
+                if (generation != sessionGeneration) {
+                    session.disconnect(); // Superseded (e.g. the chat was closed meanwhile)
+                    return;
+                }
+                OutboundQueue queue = outbox;
+                if (queue != null) {
+                    queue.requeueUnconfirmed(); // Unconfirmed sends may have died with the old session
+                }
+                stompSession = session; // Store the session
+                attempts = reconnectAttempts;
+                reconnectAttempts = 0;
+                announce = attempts == 0 || outageReported;
+                outageReported = false;
+                lastConnectionError = null;
+                setState(ConnectionState.CONNECTED);
+
+                // (Re-)subscribe to every chat that was joined or watched
+                activeSubscriptions.clear();
+                for (String topic : subscribedTopics) {
+                    subscribeOnSession(topic);
+                }
+                startProbes(generation, session);
+            }
+            if (announce) {
+                System.out.println(attempts > 0 ? "STOMP session reconnected after " + attempts + " attempt(s)." : "STOMP session connected.");
             }
 
-            connectionLatch.countDown(); // Signal that connection is complete
+            OutboundQueue queue = outbox;
+            if (queue != null) {
+                queue.wakeUp(); // Replay anything queued while disconnected
+            }
         }
 
         @Override
         public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload, Throwable exception) {
+            // A frame we couldn't handle; the session itself is fine unless it dropped
             System.err.println("STOMP Exception: command=" + command + ", headers=" + headers + ", payload=" + (payload != null ? new String(payload) : "null") + ", exception=" + exception);
-            exception.printStackTrace();
-             // Consider closing connection or attempting reconnect based on error
-             connectionLatch.countDown(); // Ensure latch is released on error
-             closeWebSocket();
+            if (!session.isConnected()) {
+                onConnectionLost(generation, "session closed after error");
+            }
         }
 
         @Override
         public void handleTransportError(StompSession session, Throwable exception) {
-            System.err.println("STOMP Transport Error: " + exception.getMessage());
-            // Log the full stack trace for transport errors as they often hide the root cause
-            exception.printStackTrace();
-            if (exception instanceof ConnectionLostException) {
-                // Handle connection loss, maybe schedule reconnect
-                 System.err.println("Connection lost.");
-            }
-             connectionLatch.countDown(); // Ensure latch is released on error
-             closeWebSocket();
+            // The supervisor re-establishes the session on the same client and re-subscribes
+            onConnectionLost(generation, exception instanceof ConnectionLostException
+                    ? "connection lost" + (exception.getMessage() != null ? ": " + exception.getMessage() : "")
+                    : "transport error: " + exception.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Request body for creating or updating an epic.
+ * Null fields are left out, so an update only touches what is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record EpicRequest(String name, String description) {
+
+    public static EpicRequest create(String name, String description) {
+        return new EpicRequest(name, description);
+    }
+
+    // Partial update: pass null for anything that should stay unchanged
+    public static EpicRequest update(String name, String description) {
+        return new EpicRequest(name, description);
+    }
+}
@@ -0,0 +1,23 @@
+package dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * Request body for starting (creating) or updating a sprint.
+ * Dates are ISO local date-times such as "2024-05-01T00:00:00", as the backend expects.
+ * Null fields are left out, so an update only touches what is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SprintRequest(UUID teamId, String name, String startDate, String endDate) {
+
+    public static SprintRequest create(UUID teamId, String name, String startDate, String endDate) {
+        return new SprintRequest(teamId, name, startDate, endDate);
+    }
+
+    // Partial update: pass null for anything that should stay unchanged
+    public static SprintRequest update(String name, String startDate, String endDate) {
+        return new SprintRequest(null, name, startDate, endDate);
+    }
+}
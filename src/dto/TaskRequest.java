@@ -0,0 +1,24 @@
+package dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Request body for creating or updating a task.
+ * Null fields are left out, so an update only touches what is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TaskRequest(String name, String description, String status) {
+
+    public static TaskRequest create(String name, String description, String status) {
+        return new TaskRequest(name, description, emptyToNull(status));
+    }
+
+    // Partial update: pass null for anything that should stay unchanged
+    public static TaskRequest update(String name, String description, String status) {
+        return new TaskRequest(name, description, emptyToNull(status));
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
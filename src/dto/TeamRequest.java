@@ -0,0 +1,19 @@
+package dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Request body for creating or updating a team.
+ * Null fields are left out, so an update only touches what is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TeamRequest(String name) {
+
+    public static TeamRequest create(String name) {
+        return new TeamRequest(name);
+    }
+
+    public static TeamRequest update(String name) {
+        return new TeamRequest(name);
+    }
+}